@@ -0,0 +1,64 @@
+package bouncing_balls;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of handling one pair of balls with each collision strategy,
+ * for a pair that collides and for a pair that does not.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollisionStrategyBenchmark {
+
+    @Param({"polar", "projection"})
+    String strategy;
+
+    @Param({"true", "false"})
+    boolean colliding;
+
+    private PhysicalObjectCollisionStrategy collisionStrategy;
+    private Ball ball1;
+    private Ball ball2;
+    private double distance;
+
+    @Setup
+    public void setUp() {
+        collisionStrategy = strategy.equals("polar")
+                ? new BallCollisionStrategy()
+                : new ProjectionBallCollisionStrategy();
+        ball1 = new Ball(0, 0, 0, 0, 1, 1);
+        ball2 = new Ball(0, 0, 0, 0, 1, 2);
+        distance = colliding ? 1.5 : 2.5;
+    }
+
+    @Benchmark
+    public Ball handleCollision() {
+        // Put the balls back in place, since a collision moves them apart
+        ball1.x = 0;
+        ball1.y = 0;
+        ball1.vx = 1;
+        ball1.vy = 0.5;
+        ball2.x = distance * 0.8;
+        ball2.y = distance * 0.6;
+        ball2.vx = -1;
+        ball2.vy = 0;
+        collisionStrategy.handleCollision(ball1, ball2);
+        return ball1;
+    }
+}
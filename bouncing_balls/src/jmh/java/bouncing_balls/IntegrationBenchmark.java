@@ -0,0 +1,67 @@
+package bouncing_balls;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of applying gravity, moving the balls and handling the walls once, with the
+ * scalar code and with the Vector API kernel. Collisions between balls are left out.
+ * With fields set to drag, the balls also feel drag and an attractor, through the
+ * force pipeline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class IntegrationBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int balls;
+
+    @Param({"true", "false"})
+    boolean vectorized;
+
+    @Param({"gravity", "drag"})
+    String fields;
+
+    private PhysicsEngine physicsEngine;
+    private BallStore store;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        double height = Math.sqrt(balls * 0.01 * 3 / 4);
+        Properties properties = new Properties();
+        properties.setProperty("balls", String.valueOf(balls));
+        properties.setProperty("width", String.valueOf(height * 4 / 3));
+        properties.setProperty("height", String.valueOf(height));
+        Scenario scenario = Scenario.fromProperties(properties);
+        store = scenario.createBalls();
+        physicsEngine = scenario.createEngine();
+        physicsEngine.setVectorized(vectorized);
+        if (fields.equals("drag")) {
+            physicsEngine.getForces().add(new DragField(0.1));
+            physicsEngine.getForces().add(new AttractorField(height * 2 / 3, height / 2, 1, 0.1));
+        }
+    }
+
+    @Benchmark
+    public BallStore integrate() {
+        physicsEngine.integrate(store, 0, store.size(), 1.0 / 120);
+        return store;
+    }
+}
@@ -0,0 +1,199 @@
+package bouncing_balls;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost and accuracy of simulating one second with each {@link Integrator}, at several step sizes.
+ *
+ * The balls never touch each other or the walls, so their exact paths are known: parabolas
+ * under gravity, and circular orbits around an {@link AttractorField}. With mutual gravity the
+ * balls orbit a heavy ball and pull on each other through a {@link MutualGravityField}, and
+ * the reference path is a run with velocity Verlet at a much smaller step. Next to the time
+ * per simulated second, the relative energy error and the root mean square distance to the
+ * exact path at the end of the second are reported as the secondary results energyError and
+ * positionError.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IntegratorBenchmark {
+
+    private static final int BALLS = 256;
+    private static final double SIZE = 1000;
+    private static final double CENTER = SIZE / 2;
+    private static final double STRENGTH = 100;
+    /** Mass of the ball at the centre of the mutual gravity orbits */
+    private static final double CENTRAL_MASS = 1000;
+    private static final double SOFTENING = 0.01;
+    private static final int REFERENCE_STEPS_PER_SECOND = 9600;
+
+    @Param({"euler", "verlet"})
+    String integrator;
+
+    @Param({"gravity", "attractor", "mutual"})
+    String field;
+
+    @Param({"15", "30", "60", "120", "480"})
+    int stepsPerSecond;
+
+    /** Errors at the end of the last simulated second */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Accuracy {
+        public double energyError;
+        public double positionError;
+    }
+
+    private PhysicsEngine physicsEngine;
+    private BallStore store;
+    private BallStore initial;
+    private BallStore reference;
+    private double initialEnergy;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        physicsEngine = createEngine(integrator.equals("verlet")
+                ? new VelocityVerletIntegrator() : new SemiImplicitEulerIntegrator());
+        initial = new BallStore(BALLS);
+        if (field.equals("gravity")) {
+            // A grid of balls thrown in nearly the same direction, so they never meet
+            for (int i = 0; i < BALLS; i++) {
+                initial.add(CENTER + (i % 16) * 2, CENTER + (i / 16) * 2,
+                        1 + 0.1 * Math.sin(i), 3 + 0.1 * Math.cos(i), 0.01, 1);
+            }
+        } else if (field.equals("mutual")) {
+            // Nearly circular orbits around a heavy ball, perturbed by the pull of the light balls
+            initial.add(CENTER, CENTER, 0, 0, 0.01, CENTRAL_MASS);
+            for (int i = 1; i < BALLS; i++) {
+                double radius = 5 + i * 0.1;
+                double angle = i * 2.399963;
+                double speed = Math.sqrt(STRENGTH / radius);
+                initial.add(CENTER + radius * Math.cos(angle), CENTER + radius * Math.sin(angle),
+                        -speed * Math.sin(angle), speed * Math.cos(angle), 0.01, 1);
+            }
+            reference = copy(initial);
+            PhysicsEngine referenceEngine = createEngine(new VelocityVerletIntegrator());
+            for (int step = 0; step < REFERENCE_STEPS_PER_SECOND; step++) {
+                referenceEngine.update(reference, 1.0 / REFERENCE_STEPS_PER_SECOND);
+            }
+        } else {
+            // Circular orbits at different radii, which never cross
+            for (int i = 0; i < BALLS; i++) {
+                double radius = 5 + i * 0.1;
+                double angle = i * 2.399963;
+                double speed = Math.sqrt(STRENGTH / radius);
+                initial.add(CENTER + radius * Math.cos(angle), CENTER + radius * Math.sin(angle),
+                        -speed * Math.sin(angle), speed * Math.cos(angle), 0.01, 1);
+            }
+        }
+        store = copy(initial);
+        initialEnergy = energy(initial);
+    }
+
+    private PhysicsEngine createEngine(Integrator integrator) {
+        PhysicsEngine engine = new PhysicsEngine(SIZE, SIZE);
+        engine.setCollisionStrategy(new ProjectionBallCollisionStrategy());
+        engine.setIntegrator(integrator);
+        if (field.equals("attractor")) {
+            engine.getForces().setGravity(0);
+            engine.getForces().add(new AttractorField(CENTER, CENTER, STRENGTH, 0));
+        } else if (field.equals("mutual")) {
+            engine.getForces().setGravity(0);
+            engine.getForces().add(new MutualGravityField(STRENGTH / CENTRAL_MASS, 0.5, SOFTENING));
+        }
+        return engine;
+    }
+
+    private static BallStore copy(BallStore balls) {
+        BallStore copy = new BallStore(BALLS);
+        for (int i = 0; i < BALLS; i++) {
+            copy.add(balls.x[i], balls.y[i], balls.vx[i], balls.vy[i], balls.radius[i], balls.mass[i]);
+        }
+        return copy;
+    }
+
+    @Benchmark
+    public BallStore simulateOneSecond(Accuracy accuracy) {
+        for (int i = 0; i < BALLS; i++) {
+            store.set(i, initial.x[i], initial.y[i], initial.vx[i], initial.vy[i], initial.radius[i], initial.mass[i]);
+        }
+        double deltaT = 1.0 / stepsPerSecond;
+        for (int step = 0; step < stepsPerSecond; step++) {
+            physicsEngine.update(store, deltaT);
+        }
+        accuracy.energyError = Math.abs(energy(store) / initialEnergy - 1);
+        accuracy.positionError = positionError(store, 1);
+        return store;
+    }
+
+    private double energy(BallStore balls) {
+        double energy = 0;
+        if (field.equals("mutual")) {
+            double gravitationalConstant = STRENGTH / CENTRAL_MASS;
+            for (int i = 0; i < BALLS; i++) {
+                energy += balls.mass[i] * (balls.vx[i] * balls.vx[i] + balls.vy[i] * balls.vy[i]) / 2;
+                for (int j = i + 1; j < BALLS; j++) {
+                    double dx = balls.x[j] - balls.x[i];
+                    double dy = balls.y[j] - balls.y[i];
+                    energy -= gravitationalConstant * balls.mass[i] * balls.mass[j]
+                            / Math.sqrt(dx * dx + dy * dy + SOFTENING * SOFTENING);
+                }
+            }
+            return energy;
+        }
+        for (int i = 0; i < BALLS; i++) {
+            energy += (balls.vx[i] * balls.vx[i] + balls.vy[i] * balls.vy[i]) / 2;
+            if (field.equals("gravity")) {
+                energy -= PhysicsEngine.GRAVITY * balls.y[i];
+            } else {
+                energy -= STRENGTH / Math.hypot(balls.x[i] - CENTER, balls.y[i] - CENTER);
+            }
+        }
+        return energy;
+    }
+
+    /**
+     * @return the root mean square distance of the balls to their exact positions at time t,
+     * which must be 1 with mutual gravity
+     */
+    private double positionError(BallStore balls, double t) {
+        double sum = 0;
+        for (int i = 0; i < BALLS; i++) {
+            double x;
+            double y;
+            if (field.equals("mutual")) {
+                x = reference.x[i];
+                y = reference.y[i];
+            } else if (field.equals("gravity")) {
+                x = initial.x[i] + initial.vx[i] * t;
+                y = initial.y[i] + initial.vy[i] * t + PhysicsEngine.GRAVITY * t * t / 2;
+            } else {
+                double dx = initial.x[i] - CENTER;
+                double dy = initial.y[i] - CENTER;
+                double radius = Math.hypot(dx, dy);
+                double angle = Math.atan2(dy, dx) + Math.sqrt(STRENGTH / radius) / radius * t;
+                x = CENTER + radius * Math.cos(angle);
+                y = CENTER + radius * Math.sin(angle);
+            }
+            sum += (balls.x[i] - x) * (balls.x[i] - x) + (balls.y[i] - y) * (balls.y[i] - y);
+        }
+        return Math.sqrt(sum / BALLS);
+    }
+}
@@ -0,0 +1,51 @@
+package bouncing_balls;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of one {@link Model#step(double)} at 60 fps with different budgets of sub-steps.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelStepBenchmark {
+
+    @Param({"1000"})
+    int balls;
+
+    @Param({"1", "2", "4", "8"})
+    int maxSubSteps;
+
+    private Model model;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Properties properties = new Properties();
+        properties.setProperty("balls", String.valueOf(balls));
+        model = Scenario.fromProperties(properties).createModel();
+        model.maxSubSteps = maxSubSteps;
+    }
+
+    @Benchmark
+    public Model step() {
+        model.step(1.0 / 60);
+        return model;
+    }
+}
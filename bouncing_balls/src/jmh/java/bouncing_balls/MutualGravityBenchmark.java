@@ -0,0 +1,69 @@
+package bouncing_balls;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of building the Barnes–Hut tree of a {@link MutualGravityField} and computing the
+ * attraction of every ball, for different numbers of balls and opening angles. An opening
+ * angle of 0 is the exact O(n^2) sum.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MutualGravityBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    int balls;
+
+    @Param({"0.5", "1.0"})
+    double openingAngle;
+
+    @Param({"uniform", "clustered"})
+    String distribution;
+
+    private MutualGravityField field;
+    private BallStore store;
+    private double[] ax;
+    private double[] ay;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Properties properties = new Properties();
+        properties.setProperty("balls", String.valueOf(balls));
+        properties.setProperty("distribution", distribution);
+        store = Scenario.fromProperties(properties).createBalls();
+        field = new MutualGravityField(1e-3, openingAngle, 0.01);
+        ax = new double[balls];
+        ay = new double[balls];
+    }
+
+    @Benchmark
+    public double[] build() {
+        field.prepare(store);
+        return ax;
+    }
+
+    @Benchmark
+    public double[] accelerations() {
+        field.prepare(store);
+        field.accumulate(store, 0, balls, ax, ay);
+        return ax;
+    }
+}
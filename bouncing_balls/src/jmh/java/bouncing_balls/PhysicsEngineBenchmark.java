@@ -0,0 +1,79 @@
+package bouncing_balls;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of one {@link PhysicsEngine#update(BallStore, double)} for scenes of different
+ * sizes and distributions. The area grows with the number of balls, so that the
+ * density is the same for every size.
+ *
+ * The scene keeps evolving during the run, so the balls gradually settle
+ * towards the floor over the iterations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PhysicsEngineBenchmark {
+
+    /** Area per ball in square meters */
+    private static final double AREA_PER_BALL = 0.01;
+
+    @Param({"10", "1000", "10000", "100000"})
+    int balls;
+
+    @Param({"uniform", "clustered"})
+    String distribution;
+
+    @Param({"grid", "sweep"})
+    String broadPhase;
+
+    @Param({"serial", "parallel"})
+    String engine;
+
+    private PhysicsEngine physicsEngine;
+    private BallStore store;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        double height = Math.sqrt(balls * AREA_PER_BALL * 3 / 4);
+        Properties properties = new Properties();
+        properties.setProperty("balls", String.valueOf(balls));
+        properties.setProperty("width", String.valueOf(height * 4 / 3));
+        properties.setProperty("height", String.valueOf(height));
+        properties.setProperty("distribution", distribution);
+        properties.setProperty("broadPhase", broadPhase);
+        properties.setProperty("engine", engine);
+        Scenario scenario = Scenario.fromProperties(properties);
+        store = scenario.createBalls();
+        physicsEngine = scenario.createEngine();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        physicsEngine.close();
+    }
+
+    @Benchmark
+    public BallStore update() {
+        physicsEngine.update(store, 1.0 / 120);
+        return store;
+    }
+}
@@ -0,0 +1,90 @@
+package bouncing_balls;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Ellipse2D;
+import java.awt.image.BufferedImage;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of drawing one 800x600 frame, with {@link BallRenderer} and with one
+ * {@link Ellipse2D} shape per ball as Animator used to do.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RendererBenchmark {
+
+    private static final int WIDTH = 800;
+    private static final int HEIGHT = 600;
+
+    @Param({"1000", "10000", "100000"})
+    int balls;
+
+    private SimulationLoop.Snapshot snapshot;
+    private double pixelsPerMeter;
+    private BallRenderer renderer;
+    private BufferedImage shapeImage;
+    private Graphics2D shapeGraphics;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        double width = Math.sqrt(balls * 0.01 * 4 / 3);
+        Properties properties = new Properties();
+        properties.setProperty("balls", String.valueOf(balls));
+        properties.setProperty("width", String.valueOf(width));
+        properties.setProperty("height", String.valueOf(width * 3 / 4));
+        Scenario scenario = Scenario.fromProperties(properties);
+        Model model = scenario.createModel();
+        snapshot = new SimulationLoop.Snapshot();
+        snapshot.copyFrom(model);
+
+        pixelsPerMeter = WIDTH / width;
+        renderer = new BallRenderer(pixelsPerMeter);
+        shapeImage = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        shapeGraphics = shapeImage.createGraphics();
+    }
+
+    @TearDown
+    public void tearDown() {
+        shapeGraphics.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage raster() {
+        return renderer.render(snapshot, WIDTH, HEIGHT);
+    }
+
+    @Benchmark
+    public BufferedImage shapes() {
+        shapeGraphics.setColor(Color.WHITE);
+        shapeGraphics.fillRect(0, 0, WIDTH, HEIGHT);
+        shapeGraphics.setColor(Color.RED);
+        for (int i = 0; i < snapshot.count; i++) {
+            double radius = snapshot.radius[i];
+            double x = snapshot.x[i] - radius;
+            double y = snapshot.y[i] + radius;
+            shapeGraphics.fill(new Ellipse2D.Double(x * pixelsPerMeter, HEIGHT - y * pixelsPerMeter,
+                    radius * 2 * pixelsPerMeter, radius * 2 * pixelsPerMeter));
+        }
+        return shapeImage;
+    }
+}
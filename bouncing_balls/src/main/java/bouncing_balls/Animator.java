@@ -1,13 +1,10 @@
 package bouncing_balls;
 
 import java.awt.*;
-import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
-import java.awt.Graphics2D;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.awt.geom.Ellipse2D;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
 import javax.swing.Timer;
@@ -24,8 +21,8 @@ public final class Animator extends JPanel implements ActionListener {
 	public Animator(int pixelWidth, int pixelHeight, int fps) {
 		super(true);
 		this.timer = new Timer(1000 / fps, this);
-		this.deltaT = 1.0 / fps;
-		this.model = new Model(pixelWidth / pixelsPerMeter, pixelHeight / pixelsPerMeter);
+		this.simulation = new SimulationLoop(new Model(pixelWidth / pixelsPerMeter, pixelHeight / pixelsPerMeter),
+				stepsPerSecond);
 		this.setOpaque(false);
 		this.setPreferredSize(new Dimension(pixelWidth, pixelHeight));
 	}
@@ -36,50 +33,44 @@ public final class Animator extends JPanel implements ActionListener {
 	private static final double pixelsPerMeter = 200;
 
 	/**
-	 * Physical model
+	 * Rate at which the model is stepped, independent of the frame rate
 	 */
-	private Model model;
+	private static final int stepsPerSecond = 120;
 
 	/**
-	 * Timer that triggers redrawing
+	 * Steps the physical model on its own thread
 	 */
-	private Timer timer;
+	private SimulationLoop simulation;
 
 	/**
-	 * Time interval between redrawing, also used as time step for the model
+	 * Draws the balls into a reused image
 	 */
-	private double deltaT;
+	private final BallRenderer renderer = new BallRenderer(pixelsPerMeter);
+
+	/**
+	 * Timer that triggers redrawing
+	 */
+	private Timer timer;
 
 	public void start() {
+		simulation.start();
 		timer.start();
 	}
 
 	public void stop() {
     	timer.stop();
+    	simulation.stop();
     }
 
 	@Override
 	protected void paintComponent(Graphics g) {
-		Graphics2D g2 = (Graphics2D) g;
-		// clear the canvas
-		g2.setColor(Color.WHITE);
-		g2.fillRect(0, 0, this.getWidth(), this.getHeight());
-		// draw balls
-		g2.setColor(Color.RED);
-		for (Ball b : model.balls) {
-			double x = b.x - b.radius;
-			double y = b.y + b.radius;
-			// paint balls (y-coordinates are inverted)
-			Ellipse2D.Double e = new Ellipse2D.Double(x * pixelsPerMeter, this.getHeight() - (y * pixelsPerMeter),
-					b.radius * 2 * pixelsPerMeter, b.radius * 2 * pixelsPerMeter);
-			g2.fill(e);
-		}
+		// draw balls into an image and copy it to the screen at once
+		g.drawImage(renderer.render(simulation.latest(), this.getWidth(), this.getHeight()), 0, 0, null);
 		Toolkit.getDefaultToolkit().sync();
 	}
 
     @Override
     public void actionPerformed(ActionEvent e) {
-    	model.step(deltaT);
     	this.repaint();
     }
 
@@ -0,0 +1,41 @@
+package bouncing_balls;
+
+/**
+ * Pulls every ball towards a fixed point, with an acceleration falling off with the
+ * square of the distance. The softening length keeps the acceleration finite close
+ * to the point. A negative strength pushes the balls away instead.
+ */
+public class AttractorField implements ForceField {
+
+    private final double x;
+    private final double y;
+    private final double strength;
+    private final double softeningSquared;
+
+    /**
+     * @param x the x-coordinate of the point
+     * @param y the y-coordinate of the point
+     * @param strength the acceleration at a distance of one meter, in m/s^2
+     * @param softening the distance below which the acceleration stops growing, in meters
+     */
+    public AttractorField(double x, double y, double strength, double softening) {
+        this.x = x;
+        this.y = y;
+        this.strength = strength;
+        this.softeningSquared = softening * softening;
+    }
+
+    @Override
+    public void accumulate(BallStore balls, int from, int to, double[] ax, double[] ay) {
+        double[] bx = balls.x;
+        double[] by = balls.y;
+        for (int i = from; i < to; i++) {
+            double dx = x - bx[i];
+            double dy = y - by[i];
+            double distanceSquared = dx * dx + dy * dy + softeningSquared;
+            double scale = strength / (distanceSquared * Math.sqrt(distanceSquared));
+            ax[i - from] += scale * dx;
+            ay[i - from] += scale * dy;
+        }
+    }
+}
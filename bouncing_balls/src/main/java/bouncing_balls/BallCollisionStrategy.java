@@ -5,11 +5,14 @@ package bouncing_balls;
  * This strategy handles elastic collision between two circular physical objects
  * using conservation of momentum and energy. 
  * 
+ * As a {@link BatchCollisionStrategy} it resolves a whole contact list with the same
+ * polar formulas, taking the collision angle from the contact normal.
+ * 
  * @authors Emma Dahlqvist, Shifaa Mahmoud, Aisha Mohamed
  * @see PhysicalObjectCollisionStrategy
  */
 
-public class BallCollisionStrategy implements PhysicalObjectCollisionStrategy {
+public class BallCollisionStrategy implements PhysicalObjectCollisionStrategy, BatchCollisionStrategy {
 
     /**
      * Handle collision between two ball objects.
@@ -57,6 +60,61 @@ public class BallCollisionStrategy implements PhysicalObjectCollisionStrategy {
         separateBalls(obj1, obj2);
     }
 
+    /**
+     * Resolve all contacts between the balls of a store.
+     *
+     * @param balls the balls the contacts refer to
+     * @param contacts the touching pairs, with their normals and overlaps
+     */
+    @Override
+    public void resolveContacts(BallStore balls, ContactList contacts) {
+        double[] x = balls.x;
+        double[] y = balls.y;
+        double[] vx = balls.vx;
+        double[] vy = balls.vy;
+        double[] mass = balls.mass;
+
+        for (int k = 0, n = contacts.size(); k < n; k++) {
+            int i = contacts.first[k];
+            int j = contacts.second[k];
+            double collisionAngle = Math.atan2(contacts.normalY[k], contacts.normalX[k]);
+
+            // Velocities in polar coordinates, rotated to the collision angle
+            double speed1 = Math.sqrt(vx[i] * vx[i] + vy[i] * vy[i]);
+            double angle1 = Math.atan2(vy[i], vx[i]) - collisionAngle;
+            double v1n = speed1 * Math.cos(angle1);
+            double v1t = speed1 * Math.sin(angle1);
+            double speed2 = Math.sqrt(vx[j] * vx[j] + vy[j] * vy[j]);
+            double angle2 = Math.atan2(vy[j], vx[j]) - collisionAngle;
+            double v2n = speed2 * Math.cos(angle2);
+            double v2t = speed2 * Math.sin(angle2);
+
+            // Handle collision in 1D
+            double m1 = mass[i];
+            double m2 = mass[j];
+            double totalMass = m1 + m2;
+            double newV1n = ((m1 - m2) * v1n + 2 * m2 * v2n) / totalMass;
+            double newV2n = ((m2 - m1) * v2n + 2 * m1 * v1n) / totalMass;
+
+            // Back to rectangular coordinates
+            double newSpeed1 = Math.sqrt(newV1n * newV1n + v1t * v1t);
+            double newAngle1 = Math.atan2(v1t, newV1n) + collisionAngle;
+            vx[i] = newSpeed1 * Math.cos(newAngle1);
+            vy[i] = newSpeed1 * Math.sin(newAngle1);
+            double newSpeed2 = Math.sqrt(newV2n * newV2n + v2t * v2t);
+            double newAngle2 = Math.atan2(v2t, newV2n) + collisionAngle;
+            vx[j] = newSpeed2 * Math.cos(newAngle2);
+            vy[j] = newSpeed2 * Math.sin(newAngle2);
+
+            //  Ensure balls are not overlapping after collision
+            double separation = contacts.depth[k] / 2;
+            x[i] -= separation * Math.cos(collisionAngle);
+            y[i] -= separation * Math.sin(collisionAngle);
+            x[j] += separation * Math.cos(collisionAngle);
+            y[j] += separation * Math.sin(collisionAngle);
+        }
+    }
+
     /**
      * Detect if two physical objects are colliding based on their position and radius
      * 
@@ -0,0 +1,295 @@
+package bouncing_balls;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Draws balls straight into the pixels of a reused image, for drawing many balls at once.
+ *
+ * Each ball size in whole pixels is rasterized once into a sprite of horizontal spans,
+ * so that drawing a ball is one array fill per pixel row. Balls outside the image are
+ * skipped, and balls on the edge are clipped span by span. Once the image and the
+ * sprites for the sizes in use exist, drawing a frame allocates nothing.
+ *
+ * Above a configurable number of balls, individual circles are no longer drawn. Instead
+ * the balls are counted per pixel, and every pixel is coloured by the number of balls
+ * in it on a logarithmic scale, from yellow for one ball to dark red for the most
+ * crowded pixel. The counting runs on a fork-join pool: the balls are first sorted into
+ * horizontal bands of rows, by a fixed number of tasks, and then every band is counted
+ * by one task straight into the image-sized count grid, so no partial grids are needed.
+ */
+class BallRenderer {
+
+    private static final int BACKGROUND = 0xFFFFFFFF;
+    private static final int BALL = 0xFFFF0000;
+
+    /** Colours of the density map, from least to most crowded */
+    private static final int[] PALETTE = new int[256];
+
+    static {
+        for (int i = 0; i < PALETTE.length; i++) {
+            double t = i / 255.0;
+            // yellow to red over the first half, red to dark red over the second
+            int red = t < 0.5 ? 255 : (int) Math.round(255 - (t - 0.5) * 2 * 127);
+            int green = t < 0.5 ? (int) Math.round(255 * (1 - t * 2)) : 0;
+            PALETTE[i] = 0xFF000000 | red << 16 | green << 8;
+        }
+    }
+
+    /** Number of image rows below which the density map is coloured on one thread */
+    private static final int ROWS_PER_TASK = 16;
+
+    /** Number of shares of the balls sorted into bands in parallel */
+    private static final int CHUNKS = 8;
+
+    /** Largest number of bands of rows the balls are sorted into */
+    private static final int BANDS = 64;
+
+    private final double pixelsPerMeter;
+    private final ForkJoinPool pool;
+
+    /** Number of balls above which a density map is drawn instead of circles */
+    private int circleLimit = 200_000;
+
+    /** Ball counts per pixel */
+    private int[] counts = new int[0];
+    /** Highest count of each image row */
+    private int[] rowMax = new int[0];
+    /** Pixel of each ball, or -1 outside the image */
+    private int[] ballPixels = new int[0];
+    /** Pixels of the balls, sorted by band */
+    private int[] bandPixels = new int[0];
+    /** Balls per band in each share, then where each share writes its balls of each band */
+    private final int[] bandOffsets = new int[CHUNKS * BANDS];
+    /** Start of each band in bandPixels, and the end of the last */
+    private final int[] bandStart = new int[BANDS + 1];
+
+    private BufferedImage image;
+    private int[] pixels;
+
+    /** Sprites by radius in pixels, created when first needed */
+    private int[][] sprites = new int[0][];
+
+    BallRenderer(double pixelsPerMeter) {
+        this(pixelsPerMeter, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param pool the pool the density map is computed on
+     */
+    BallRenderer(double pixelsPerMeter, ForkJoinPool pool) {
+        this.pixelsPerMeter = pixelsPerMeter;
+        this.pool = pool;
+    }
+
+    /**
+     * Set the number of balls above which a density map is drawn instead of circles.
+     */
+    void setCircleLimit(int circleLimit) {
+        if (circleLimit < 0) {
+            throw new IllegalArgumentException("Circle limit must not be negative");
+        }
+        this.circleLimit = circleLimit;
+    }
+
+    /**
+     * Draw the balls of a snapshot on a white background.
+     *
+     * @return the image drawn into, reused by the next call unless the size changes
+     */
+    BufferedImage render(SimulationLoop.Snapshot balls, int width, int height) {
+        if (image == null || image.getWidth() != width || image.getHeight() != height) {
+            image = new BufferedImage(Math.max(width, 1), Math.max(height, 1), BufferedImage.TYPE_INT_RGB);
+            pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        }
+        width = image.getWidth();
+        height = image.getHeight();
+        if (balls.count > circleLimit) {
+            renderDensity(balls, width, height);
+            return image;
+        }
+        Arrays.fill(pixels, BACKGROUND);
+
+        for (int i = 0; i < balls.count; i++) {
+            int r = (int) Math.round(balls.radius[i] * pixelsPerMeter);
+            int cx = (int) Math.round(balls.x[i] * pixelsPerMeter);
+            // y-coordinates are inverted
+            int cy = height - (int) Math.round(balls.y[i] * pixelsPerMeter);
+            if (cx + r < 0 || cx - r >= width || cy + r < 0 || cy - r >= height) {
+                continue;
+            }
+            int[] halfWidths = sprite(r);
+            int top = Math.max(cy - r, 0);
+            int bottom = Math.min(cy + r, height - 1);
+            for (int py = top; py <= bottom; py++) {
+                int half = halfWidths[py - cy + r];
+                int from = Math.max(cx - half, 0);
+                int to = Math.min(cx + half + 1, width);
+                if (from < to) {
+                    int row = py * width;
+                    Arrays.fill(pixels, row + from, row + to, BALL);
+                }
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Count the balls per pixel and colour every pixel by its count.
+     */
+    private void renderDensity(SimulationLoop.Snapshot balls, int width, int height) {
+        if (counts.length != pixels.length || rowMax.length != height) {
+            counts = new int[pixels.length];
+            rowMax = new int[height];
+        }
+        if (ballPixels.length < balls.count) {
+            ballPixels = new int[balls.count];
+            bandPixels = new int[balls.count];
+        }
+        int bands = Math.min(BANDS, height);
+
+        // Every share finds the pixels of its balls and counts them per band
+        invoke(0, CHUNKS, 1, (from, to) -> {
+            for (int chunk = from; chunk < to; chunk++) {
+                int base = chunk * BANDS;
+                Arrays.fill(bandOffsets, base, base + bands, 0);
+                int first = (int) ((long) balls.count * chunk / CHUNKS);
+                int last = (int) ((long) balls.count * (chunk + 1) / CHUNKS);
+                for (int i = first; i < last; i++) {
+                    int px = (int) Math.floor(balls.x[i] * pixelsPerMeter);
+                    // y-coordinates are inverted
+                    int py = (int) Math.floor(height - balls.y[i] * pixelsPerMeter);
+                    if (px >= 0 && px < width && py >= 0 && py < height) {
+                        ballPixels[i] = py * width + px;
+                        bandOffsets[base + (int) ((long) py * bands / height)]++;
+                    } else {
+                        ballPixels[i] = -1;
+                    }
+                }
+            }
+        });
+
+        // Turn the counts into offsets, band by band and share by share within a band
+        int offset = 0;
+        for (int band = 0; band < bands; band++) {
+            bandStart[band] = offset;
+            for (int chunk = 0; chunk < CHUNKS; chunk++) {
+                int count = bandOffsets[chunk * BANDS + band];
+                bandOffsets[chunk * BANDS + band] = offset;
+                offset += count;
+            }
+        }
+        bandStart[bands] = offset;
+
+        invoke(0, CHUNKS, 1, (from, to) -> {
+            for (int chunk = from; chunk < to; chunk++) {
+                int base = chunk * BANDS;
+                int first = (int) ((long) balls.count * chunk / CHUNKS);
+                int last = (int) ((long) balls.count * (chunk + 1) / CHUNKS);
+                for (int i = first; i < last; i++) {
+                    int pixel = ballPixels[i];
+                    if (pixel >= 0) {
+                        int band = (int) ((long) (pixel / width) * bands / height);
+                        bandPixels[bandOffsets[base + band]++] = pixel;
+                    }
+                }
+            }
+        });
+
+        // Every band is counted by one task, so no two tasks write the same pixel
+        invoke(0, bands, 1, (from, to) -> {
+            for (int band = from; band < to; band++) {
+                int firstRow = (int) (((long) band * height + bands - 1) / bands);
+                int lastRow = (int) (((long) (band + 1) * height + bands - 1) / bands);
+                Arrays.fill(counts, firstRow * width, lastRow * width, 0);
+                for (int k = bandStart[band]; k < bandStart[band + 1]; k++) {
+                    counts[bandPixels[k]]++;
+                }
+                for (int row = firstRow; row < lastRow; row++) {
+                    int max = 0;
+                    for (int p = row * width, end = p + width; p < end; p++) {
+                        max = Math.max(max, counts[p]);
+                    }
+                    rowMax[row] = max;
+                }
+            }
+        });
+
+        int max = 0;
+        for (int row = 0; row < height; row++) {
+            max = Math.max(max, rowMax[row]);
+        }
+        double scale = (PALETTE.length - 1) / Math.log(Math.max(max, 2));
+        invoke(0, height, ROWS_PER_TASK, (from, to) -> {
+            for (int p = from * width, end = to * width; p < end; p++) {
+                int count = counts[p];
+                // Rounded, so the most crowded pixel gets the last colour despite rounding errors in the logarithm
+                pixels[p] = count == 0 ? BACKGROUND : PALETTE[(int) (Math.log(count) * scale + 0.5)];
+            }
+        });
+    }
+
+    /**
+     * Run body over the range [from, to) on the pool, split into tasks of at most grain elements.
+     */
+    private void invoke(int from, int to, int grain, RangeBody body) {
+        pool.invoke(new RangeAction(body, from, to, grain));
+    }
+
+    /**
+     * The sprite of a ball with radius r pixels: the half width of each of its 2r + 1 rows.
+     */
+    int[] sprite(int r) {
+        if (r >= sprites.length) {
+            sprites = Arrays.copyOf(sprites, Math.max(r + 1, sprites.length * 2));
+        }
+        int[] halfWidths = sprites[r];
+        if (halfWidths == null) {
+            halfWidths = new int[2 * r + 1];
+            for (int dy = -r; dy <= r; dy++) {
+                // Pixels whose centre lies within the circle
+                halfWidths[dy + r] = (int) Math.floor(Math.sqrt((r + 0.5) * (r + 0.5) - dy * dy));
+            }
+            sprites[r] = halfWidths;
+        }
+        return halfWidths;
+    }
+
+    /**
+     * Work on a range of indices, from (inclusive) to to (exclusive).
+     */
+    private interface RangeBody {
+        void run(int from, int to);
+    }
+
+    /**
+     * Splits a range in halves until it is small enough to run directly.
+     */
+    @SuppressWarnings("serial")
+    private static class RangeAction extends RecursiveAction {
+        private final RangeBody body;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        RangeAction(RangeBody body, int from, int to, int grain) {
+            this.body = body;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                body.run(from, to);
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new RangeAction(body, from, mid, grain), new RangeAction(body, mid, to, grain));
+            }
+        }
+    }
+}
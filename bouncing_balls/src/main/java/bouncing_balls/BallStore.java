@@ -0,0 +1,193 @@
+package bouncing_balls;
+
+import java.util.Arrays;
+
+/**
+ * Stores the state of many balls as a structure of arrays.
+ *
+ * Each property lives in its own primitive array, indexed by ball, so that the
+ * physics passes can run over plain {@code double[]} instead of chasing one
+ * heap object per ball. Only the first {@link #size()} entries of each array are in use.
+ *
+ * A {@link View} gives {@link PhysicalObject} access to a single ball, for code such as
+ * the collision strategies that works on one pair of objects at a time.
+ *
+ * Adding or setting a ball, through the store or a view, counts as a modification, so
+ * that state derived from the balls can tell when it is out of date. Writes straight to
+ * the arrays, as the physics passes make, are not counted.
+ *
+ * @see PhysicsEngine#update(BallStore, double)
+ */
+public class BallStore {
+    /** The x-coordinates of the balls' centers */
+    double[] x;
+
+    /** The y-coordinates of the balls' centers */
+    double[] y;
+
+    /** The velocity components in the x-direction */
+    double[] vx;
+
+    /** The velocity components in the y-direction */
+    double[] vy;
+
+    /** The radii of the balls */
+    double[] radius;
+
+    /** The masses of the balls */
+    double[] mass;
+
+    /** Whether each ball is asleep, and left alone by the physics engine until something wakes it */
+    boolean[] asleep;
+
+    /** Number of balls in the store */
+    private int size;
+
+    /** Number of modifications made through {@link #add}, {@link #set} and the views */
+    private int modifications;
+
+    /**
+     * Constructs an empty store.
+     *
+     * @param capacity the number of balls to make room for
+     */
+    BallStore(int capacity) {
+        x = new double[capacity];
+        y = new double[capacity];
+        vx = new double[capacity];
+        vy = new double[capacity];
+        radius = new double[capacity];
+        mass = new double[capacity];
+        asleep = new boolean[capacity];
+    }
+
+    /**
+     * Adds a ball to the store, growing the arrays if needed.
+     *
+     * @return the index of the new ball
+     */
+    int add(double x, double y, double vx, double vy, double r, double m) {
+        if (size == this.x.length) {
+            grow(Math.max(8, size * 2));
+        }
+        set(size, x, y, vx, vy, r, m);
+        return size++;
+    }
+
+    /**
+     * Overwrites all properties of the ball at index i.
+     */
+    void set(int i, double x, double y, double vx, double vy, double r, double m) {
+        this.x[i] = x;
+        this.y[i] = y;
+        this.vx[i] = vx;
+        this.vy[i] = vy;
+        this.radius[i] = r;
+        this.mass[i] = m;
+        this.asleep[i] = false;
+        modifications++;
+    }
+
+    /**
+     * @return the number of balls in the store
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of modifications made through {@link #add}, {@link #set} and the views
+     */
+    int getModifications() {
+        return modifications;
+    }
+
+    /**
+     * @return a view of the ball at index i
+     */
+    public View get(int i) {
+        return new View(this, i);
+    }
+
+    private void grow(int capacity) {
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        vx = Arrays.copyOf(vx, capacity);
+        vy = Arrays.copyOf(vy, capacity);
+        radius = Arrays.copyOf(radius, capacity);
+        mass = Arrays.copyOf(mass, capacity);
+        asleep = Arrays.copyOf(asleep, capacity);
+    }
+
+    /**
+     * A {@link PhysicalObject} that reads and writes one ball of a store.
+     *
+     * The index can be moved, so a single view can be reused for many balls
+     * without allocating.
+     */
+    public static class View implements PhysicalObject {
+        final BallStore store;
+
+        /** Index of the ball this view refers to */
+        int index;
+
+        View(BallStore store, int index) {
+            this.store = store;
+            this.index = index;
+        }
+
+        @Override
+        public double getMass() {
+            return store.mass[index];
+        }
+
+        @Override
+        public double getRadius() {
+            return store.radius[index];
+        }
+
+        @Override
+        public double getVX() {
+            return store.vx[index];
+        }
+
+        @Override
+        public double getVY() {
+            return store.vy[index];
+        }
+
+        @Override
+        public double getX() {
+            return store.x[index];
+        }
+
+        @Override
+        public double getY() {
+            return store.y[index];
+        }
+
+        @Override
+        public void setVX(double vx) {
+            store.vx[index] = vx;
+            store.modifications++;
+        }
+
+        @Override
+        public void setVY(double vy) {
+            store.vy[index] = vy;
+            store.modifications++;
+        }
+
+        @Override
+        public void setX(double x) {
+            store.x[index] = x;
+            store.modifications++;
+        }
+
+        @Override
+        public void setY(double y) {
+            store.y[index] = y;
+            store.modifications++;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package bouncing_balls;
+
+/**
+ * Strategy interface for resolving all contacts between the balls of a {@link BallStore}
+ * at once. {@link PhysicsEngine} prefers this form when its collision strategy
+ * implements it, and then calls the strategy once per update instead of once per pair.
+ *
+ * The contacts are found before any of them is resolved, so the normals and depths are
+ * those at the start of the collision phase.
+ *
+ * @see PhysicalObjectCollisionStrategy
+ */
+public interface BatchCollisionStrategy {
+    void resolveContacts(BallStore balls, ContactList contacts);
+}
@@ -0,0 +1,31 @@
+package bouncing_balls;
+
+/**
+ * Broad-phase stage of the collision pipeline.
+ * Finds pairs of objects that are close enough to possibly collide, so that the
+ * {@link PhysicalObjectCollisionStrategy} only has to look at nearby pairs.
+ *
+ * Positions and radii are passed as primitive arrays so that implementations can
+ * scan them without going through the {@link PhysicalObject} interface.
+ */
+public interface BroadPhase {
+
+    /**
+     * Report every candidate pair among the first count objects.
+     * Each pair is reported at most once, with i < j.
+     *
+     * @param x the x-coordinates of the objects
+     * @param y the y-coordinates of the objects
+     * @param radius the radii of the objects
+     * @param count the number of objects to consider
+     * @param handler receives the candidate pairs
+     */
+    void findPairs(double[] x, double[] y, double[] radius, int count, PairHandler handler);
+
+    /**
+     * Receives candidate pairs from a broad phase.
+     */
+    interface PairHandler {
+        void handlePair(int i, int j);
+    }
+}
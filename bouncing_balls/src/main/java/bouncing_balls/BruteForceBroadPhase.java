@@ -0,0 +1,19 @@
+package bouncing_balls;
+
+/**
+ * Broad phase that reports every pair of objects.
+ *
+ * This is O(n^2) and only meant for small scenes, or as a reference to check
+ * and benchmark the other broad phases against.
+ */
+public class BruteForceBroadPhase implements BroadPhase {
+
+    @Override
+    public void findPairs(double[] x, double[] y, double[] radius, int count, PairHandler handler) {
+        for (int i = 0; i < count; i++) {
+            for (int j = i + 1; j < count; j++) {
+                handler.handlePair(i, j);
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package bouncing_balls;
+
+/**
+ * A field giving every ball the same acceleration, such as gravity or a steady wind.
+ *
+ * A {@link ForcePipeline} adds up all its constant fields into one acceleration instead
+ * of calling them, so any number of constant fields costs the same as gravity alone.
+ */
+public class ConstantField implements ForceField {
+
+    final double accelerationX;
+    final double accelerationY;
+
+    /**
+     * @param accelerationX the acceleration in the x-direction, in m/s^2
+     * @param accelerationY the acceleration in the y-direction, in m/s^2
+     */
+    public ConstantField(double accelerationX, double accelerationY) {
+        this.accelerationX = accelerationX;
+        this.accelerationY = accelerationY;
+    }
+
+    @Override
+    public void accumulate(BallStore balls, int from, int to, double[] ax, double[] ay) {
+        for (int k = 0; k < to - from; k++) {
+            ax[k] += accelerationX;
+            ay[k] += accelerationY;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package bouncing_balls;
+
+import java.util.Arrays;
+
+/**
+ * Impulses of the contacts of the previous update, keyed by the pair of balls, for
+ * warm starting a {@link SequentialImpulseSolver}.
+ *
+ * Two open-addressing hash tables of primitive arrays are kept: the one of the previous
+ * update, which is read, and the one of the current update, which is written. A pair is the
+ * same whichever of its balls comes first. The tables are reused between updates and only
+ * grow.
+ */
+class ContactCache {
+
+    /** Marks an empty slot; keys of real pairs are never negative */
+    private static final long EMPTY = -1;
+
+    private long[] previousKeys = newKeys(16);
+    private double[] previousImpulses = new double[16];
+    private long[] keys = newKeys(16);
+    private double[] impulses = new double[16];
+    private int size;
+
+    /**
+     * @return the impulse stored for the pair of balls i and j in the previous update, or 0
+     */
+    double get(int i, int j) {
+        long key = key(i, j);
+        int mask = previousKeys.length - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            long stored = previousKeys[slot];
+            if (stored == key) {
+                return previousImpulses[slot];
+            }
+            if (stored == EMPTY) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Store the impulse of the pair of balls i and j in the current update.
+     */
+    void put(int i, int j, double impulse) {
+        if (2 * (size + 1) > keys.length) {
+            grow();
+        }
+        insert(keys, impulses, key(i, j), impulse);
+    }
+
+    /**
+     * Make the current update the previous one, and start an empty current update.
+     */
+    void nextUpdate() {
+        long[] swapKeys = previousKeys;
+        previousKeys = keys;
+        keys = swapKeys;
+        double[] swapImpulses = previousImpulses;
+        previousImpulses = impulses;
+        impulses = swapImpulses;
+        if (keys.length < previousKeys.length) {
+            keys = newKeys(previousKeys.length);
+            impulses = new double[previousKeys.length];
+        } else {
+            Arrays.fill(keys, EMPTY);
+        }
+        size = 0;
+    }
+
+    /**
+     * Forget all stored impulses.
+     */
+    void clear() {
+        Arrays.fill(previousKeys, EMPTY);
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    private void insert(long[] keys, double[] impulses, long key, double impulse) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == EMPTY) {
+            size++;
+        }
+        keys[slot] = key;
+        impulses[slot] = impulse;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        double[] oldImpulses = impulses;
+        keys = newKeys(oldKeys.length * 2);
+        impulses = new double[oldKeys.length * 2];
+        size = 0;
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != EMPTY) {
+                insert(keys, impulses, oldKeys[slot], oldImpulses[slot]);
+            }
+        }
+    }
+
+    private static long[] newKeys(int capacity) {
+        long[] keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        return keys;
+    }
+
+    private static long key(int i, int j) {
+        return i < j ? (long) i << 32 | j : (long) j << 32 | i;
+    }
+
+    private static int hash(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32);
+    }
+}
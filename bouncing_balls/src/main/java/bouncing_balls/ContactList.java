@@ -0,0 +1,72 @@
+package bouncing_balls;
+
+import java.util.Arrays;
+
+/**
+ * A list of touching pairs of balls, kept in primitive arrays so that a
+ * {@link BatchCollisionStrategy} can resolve them in one tight loop.
+ *
+ * Contact k is between balls first[k] and second[k] of a {@link BallStore}. Its normal
+ * (normalX[k], normalY[k]) is a unit vector pointing from the first ball to the second,
+ * and depth[k] is how far the balls overlap along it. The list is reused between
+ * updates and only grows.
+ */
+public class ContactList {
+
+    int[] first = new int[16];
+    int[] second = new int[16];
+    double[] normalX = new double[16];
+    double[] normalY = new double[16];
+    double[] depth = new double[16];
+    private int size;
+
+    /**
+     * Add a contact between balls i and j.
+     */
+    public void add(int i, int j, double nx, double ny, double overlap) {
+        if (size == first.length) {
+            int capacity = size * 2;
+            first = Arrays.copyOf(first, capacity);
+            second = Arrays.copyOf(second, capacity);
+            normalX = Arrays.copyOf(normalX, capacity);
+            normalY = Arrays.copyOf(normalY, capacity);
+            depth = Arrays.copyOf(depth, capacity);
+        }
+        first[size] = i;
+        second[size] = j;
+        normalX[size] = nx;
+        normalY[size] = ny;
+        depth[size] = overlap;
+        size++;
+    }
+
+    /**
+     * Add a contact between balls i and j of a store if they overlap.
+     *
+     * @return whether they overlap
+     */
+    public boolean addIfTouching(BallStore balls, int i, int j) {
+        double dx = balls.x[j] - balls.x[i];
+        double dy = balls.y[j] - balls.y[i];
+        double distanceSquared = dx * dx + dy * dy;
+        double radii = balls.radius[i] + balls.radius[j];
+        if (distanceSquared >= radii * radii) {
+            return false;
+        }
+        double distance = Math.sqrt(distanceSquared);
+        if (distance > 0) {
+            add(i, j, dx / distance, dy / distance, radii - distance);
+        } else {
+            add(i, j, 1, 0, radii);
+        }
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+}
@@ -0,0 +1,29 @@
+package bouncing_balls;
+
+/**
+ * Linear air drag, slowing every ball down in proportion to its speed.
+ */
+public class DragField implements ForceField {
+
+    private final double rate;
+
+    /**
+     * @param rate the deceleration per unit of speed, in 1/s
+     */
+    public DragField(double rate) {
+        if (rate < 0) {
+            throw new IllegalArgumentException("Drag rate must not be negative");
+        }
+        this.rate = rate;
+    }
+
+    @Override
+    public void accumulate(BallStore balls, int from, int to, double[] ax, double[] ay) {
+        double[] vx = balls.vx;
+        double[] vy = balls.vy;
+        for (int i = from; i < to; i++) {
+            ax[i - from] -= rate * vx[i];
+            ay[i - from] -= rate * vy[i];
+        }
+    }
+}
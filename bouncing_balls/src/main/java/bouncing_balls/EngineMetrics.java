@@ -0,0 +1,288 @@
+package bouncing_balls;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Records where the time of each {@link PhysicsEngine} update goes.
+ *
+ * For every update the engine records the time spent in each phase, the number of
+ * candidate pairs from the broad phase, the number of those pairs that actually touch,
+ * the number of wall hits, and the bytes allocated by the updating thread. Every
+ * quantity goes into a {@link Histogram}, which threads can update without locking.
+ *
+ * The metrics can be written as JSON or CSV, and read over JMX after
+ * {@link #register(String)}. An engine without metrics skips all of this, at the
+ * cost of one null check per phase.
+ */
+public class EngineMetrics implements EngineMetricsMBean {
+
+    /**
+     * The phases of an update. Integration includes the wall collisions, which are
+     * handled in the same pass over the balls.
+     */
+    public enum Phase {
+        GRAVITY, INTEGRATE, COLLIDE, SLEEP, STEP
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+    private final Histogram[] phaseNanos = new Histogram[Phase.values().length];
+    final Histogram candidatePairs = new Histogram();
+    final Histogram contacts = new Histogram();
+    final Histogram wallHits = new Histogram();
+    final Histogram allocatedBytes = new Histogram();
+
+    public EngineMetrics() {
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i] = new Histogram();
+        }
+    }
+
+    /**
+     * @return the histogram of the time spent in a phase, in nanoseconds
+     */
+    public Histogram phase(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    void recordPhase(Phase phase, long nanos) {
+        phaseNanos[phase.ordinal()].record(nanos);
+    }
+
+    /**
+     * Record the counts of one update.
+     */
+    void recordStep(long pairs, long touching, long walls, long bytes) {
+        candidatePairs.record(pairs);
+        contacts.record(touching);
+        wallHits.record(walls);
+        allocatedBytes.record(bytes);
+    }
+
+    /**
+     * @return the bytes allocated by the current thread so far, or 0 if the JVM does not tell
+     */
+    static long allocatedBytes() {
+        return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                return threads;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Make the metrics readable over JMX as bouncing_balls:type=EngineMetrics,name=name.
+     */
+    public void register(String name) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+                new ObjectName("bouncing_balls:type=EngineMetrics,name=" + ObjectName.quote(name)));
+    }
+
+    /**
+     * Write the metrics as a JSON object with one member per histogram.
+     */
+    public void writeJson(Appendable out) throws IOException {
+        out.append("{\n");
+        String separator = "";
+        for (Phase phase : Phase.values()) {
+            out.append(separator);
+            phase(phase).writeJson(out, phase.name().toLowerCase(Locale.ROOT) + "Nanos");
+            separator = ",\n";
+        }
+        candidatePairs.writeJson(out.append(separator), "candidatePairs");
+        contacts.writeJson(out.append(separator), "contacts");
+        wallHits.writeJson(out.append(separator), "wallHits");
+        allocatedBytes.writeJson(out.append(separator), "allocatedBytes");
+        out.append("\n}\n");
+    }
+
+    /**
+     * Write the metrics as CSV, one row per histogram.
+     */
+    public void writeCsv(Appendable out) throws IOException {
+        out.append("metric,count,mean,min,p50,p90,p99,max\n");
+        for (Phase phase : Phase.values()) {
+            phase(phase).writeCsv(out, phase.name().toLowerCase(Locale.ROOT) + "Nanos");
+        }
+        candidatePairs.writeCsv(out, "candidatePairs");
+        contacts.writeCsv(out, "contacts");
+        wallHits.writeCsv(out, "wallHits");
+        allocatedBytes.writeCsv(out, "allocatedBytes");
+    }
+
+    @Override
+    public long getSteps() {
+        return phase(Phase.STEP).getCount();
+    }
+
+    @Override
+    public double getMeanStepNanos() {
+        return phase(Phase.STEP).getMean();
+    }
+
+    @Override
+    public long getP99StepNanos() {
+        return phase(Phase.STEP).getPercentile(0.99);
+    }
+
+    @Override
+    public double getMeanGravityNanos() {
+        return phase(Phase.GRAVITY).getMean();
+    }
+
+    @Override
+    public double getMeanIntegrateNanos() {
+        return phase(Phase.INTEGRATE).getMean();
+    }
+
+    @Override
+    public double getMeanCollideNanos() {
+        return phase(Phase.COLLIDE).getMean();
+    }
+
+    @Override
+    public double getMeanSleepNanos() {
+        return phase(Phase.SLEEP).getMean();
+    }
+
+    @Override
+    public double getMeanCandidatePairs() {
+        return candidatePairs.getMean();
+    }
+
+    @Override
+    public double getMeanContacts() {
+        return contacts.getMean();
+    }
+
+    @Override
+    public double getMeanWallHits() {
+        return wallHits.getMean();
+    }
+
+    @Override
+    public double getMeanAllocatedBytes() {
+        return allocatedBytes.getMean();
+    }
+
+    @Override
+    public String getJson() {
+        StringBuilder json = new StringBuilder();
+        try {
+            writeJson(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // not thrown by StringBuilder
+        }
+        return json.toString();
+    }
+
+    @Override
+    public void reset() {
+        for (Histogram histogram : phaseNanos) {
+            histogram.reset();
+        }
+        candidatePairs.reset();
+        contacts.reset();
+        wallHits.reset();
+        allocatedBytes.reset();
+    }
+
+    /**
+     * A histogram of non-negative values with one bucket per power of two.
+     * Values can be recorded from any number of threads without locking.
+     * Percentiles are reported as the upper bound of their bucket, so they
+     * are at most twice the true value.
+     */
+    public static class Histogram {
+
+        /** Bucket 0 holds 0, bucket b holds values from 2^(b-1) to 2^b - 1 */
+        private final AtomicLongArray buckets = new AtomicLongArray(65);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long value) {
+            value = Math.max(value, 0);
+            buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(value));
+            count.incrementAndGet();
+            sum.addAndGet(value);
+            min.accumulateAndGet(value, Math::min);
+            max.accumulateAndGet(value, Math::max);
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public double getMean() {
+            long n = count.get();
+            return n == 0 ? 0 : (double) sum.get() / n;
+        }
+
+        public long getMin() {
+            return count.get() == 0 ? 0 : min.get();
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        /**
+         * @return the upper bound of the bucket holding the value at the given fraction, from 0 to 1
+         */
+        public long getPercentile(double fraction) {
+            long n = count.get();
+            if (n == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(fraction * n);
+            long seen = 0;
+            for (int b = 0; b < 65; b++) {
+                seen += buckets.get(b);
+                if (seen >= rank) {
+                    long upper = b == 0 ? 0 : b == 64 ? Long.MAX_VALUE : (1L << b) - 1;
+                    return Math.min(upper, getMax());
+                }
+            }
+            return getMax();
+        }
+
+        void reset() {
+            for (int b = 0; b < 65; b++) {
+                buckets.set(b, 0);
+            }
+            count.set(0);
+            sum.set(0);
+            min.set(Long.MAX_VALUE);
+            max.set(0);
+        }
+
+        void writeJson(Appendable out, String name) throws IOException {
+            out.append(String.format(Locale.ROOT,
+                    "  \"%s\": {\"count\": %d, \"mean\": %.1f, \"min\": %d, \"p50\": %d, \"p90\": %d, \"p99\": %d, \"max\": %d}",
+                    name, getCount(), getMean(), getMin(),
+                    getPercentile(0.5), getPercentile(0.9), getPercentile(0.99), getMax()));
+        }
+
+        void writeCsv(Appendable out, String name) throws IOException {
+            out.append(String.format(Locale.ROOT, "%s,%d,%.1f,%d,%d,%d,%d,%d%n",
+                    name, getCount(), getMean(), getMin(),
+                    getPercentile(0.5), getPercentile(0.9), getPercentile(0.99), getMax()));
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package bouncing_balls;
+
+/**
+ * Management interface of {@link EngineMetrics}, for reading the metrics over JMX.
+ * All times are in nanoseconds and all means are per step.
+ */
+public interface EngineMetricsMBean {
+
+    long getSteps();
+
+    double getMeanStepNanos();
+
+    long getP99StepNanos();
+
+    double getMeanGravityNanos();
+
+    double getMeanIntegrateNanos();
+
+    double getMeanCollideNanos();
+
+    double getMeanSleepNanos();
+
+    double getMeanCandidatePairs();
+
+    double getMeanContacts();
+
+    double getMeanWallHits();
+
+    double getMeanAllocatedBytes();
+
+    /**
+     * @return all metrics as JSON
+     */
+    String getJson();
+
+    /**
+     * Forget everything recorded so far.
+     */
+    void reset();
+}
@@ -0,0 +1,309 @@
+package bouncing_balls;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Runs many independent worlds in one JVM, for sweeps over the parameters of a {@link Scenario}.
+ *
+ * Usage: {@code EnsembleRunner [scenario.properties] [key=value ...]}
+ *
+ * Any scenario key can be swept by giving a comma-separated list of values as
+ * {@code sweep.key}, for example {@code sweep.maxRadius=0.02,0.03,0.05}. A world is created
+ * for every combination of the swept values, and every combination is repeated with
+ * different seeds. Besides the keys of {@link Scenario} and steps, time and dt as for
+ * {@link HeadlessRunner}, the following keys control the run:
+ * <pre>
+ * replicas   number of worlds per combination, each with its own seed (1)
+ * poolThreads  number of threads stepping worlds (all cores)
+ * output     file to write the statistics of every world to, as CSV (standard output)
+ * </pre>
+ *
+ * Each world is stepped to the end by one task of a work-stealing pool, so worlds never
+ * wait for each other and the throughput grows with the number of cores. After every
+ * step the kinetic energy, potential energy and centre-of-mass height of each world are
+ * folded into running statistics (mean, variance, minimum and maximum), which are kept
+ * for all worlds in one shared primitive array, so nothing is stored per step.
+ */
+public class EnsembleRunner {
+
+    /** Observables of a world, sampled after every step */
+    static final int KINETIC = 0, POTENTIAL = 1, HEIGHT = 2, OBSERVABLES = 3;
+    private static final String[] OBSERVABLE_NAMES = {"kinetic", "potential", "height"};
+
+    /** Statistics of an observable: running mean, sum of squared deviations, minimum and maximum */
+    private static final int MEAN = 0, M2 = 1, MIN = 2, MAX = 3, STATISTICS = 4;
+
+    /**
+     * Doubles per world in the statistics: the 12 used, padded to 192 bytes so that at least
+     * a whole 64-byte cache line separates the statistics of two worlds, whatever the
+     * alignment of the array. Worlds stepped on different threads then never write to the
+     * same cache line.
+     */
+    private static final int WORLD_STRIDE = 24;
+
+    private final Properties[] settings;
+    private final Model[] worlds;
+    private final InvariantMonitor[] monitors;
+    private final ForkJoinPool pool;
+
+    /** Statistics of every world and observable, at world * WORLD_STRIDE + observable * STATISTICS */
+    final double[] statistics;
+    /** Number of samples folded into the statistics of every world */
+    private long samples;
+
+    /**
+     * Create the worlds of an ensemble, on the threads of the pool.
+     *
+     * @param settings the scenario of each world
+     */
+    EnsembleRunner(List<Properties> settings, ForkJoinPool pool) {
+        this.settings = settings.toArray(new Properties[0]);
+        this.pool = pool;
+        int count = this.settings.length;
+        worlds = new Model[count];
+        monitors = new InvariantMonitor[count];
+        statistics = new double[count * WORLD_STRIDE];
+        ForkJoinPool single = new ForkJoinPool(1);
+        try {
+            forEachWorld((from, to) -> {
+                for (int w = from; w < to; w++) {
+                    Scenario scenario = Scenario.fromProperties(this.settings[w]);
+                    if (scenario.engine.equals("parallel")) {
+                        throw new IllegalArgumentException("Worlds of an ensemble already run in parallel, use another engine");
+                    }
+                    worlds[w] = scenario.createModel();
+                    // The monitor sums on the world's own thread, so it gets a pool it never uses
+                    monitors[w] = new InvariantMonitor(single);
+                    monitors[w].setGravity(scenario.gravity);
+                    monitors[w].check(worlds[w].balls, 0);
+                    sample(w);
+                }
+            });
+        } finally {
+            single.shutdown();
+        }
+        samples = 1;
+    }
+
+    /**
+     * Expand the sweep.key lists and replicas of the properties into the settings of every world.
+     * The other keys are copied to every world unchanged.
+     */
+    static List<Properties> sweep(Properties properties) {
+        List<Properties> worlds = new ArrayList<>();
+        Properties base = new Properties();
+        TreeSet<String> swept = new TreeSet<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith("sweep.")) {
+                swept.add(key.substring("sweep.".length()));
+            } else {
+                base.setProperty(key, properties.getProperty(key));
+            }
+        }
+        worlds.add(base);
+        for (String key : swept) {
+            List<Properties> expanded = new ArrayList<>();
+            for (Properties world : worlds) {
+                for (String value : properties.getProperty("sweep." + key).split(",")) {
+                    Properties copy = new Properties();
+                    copy.putAll(world);
+                    copy.setProperty(key, value.trim());
+                    expanded.add(copy);
+                }
+            }
+            worlds = expanded;
+        }
+
+        int replicas = Integer.parseInt(properties.getProperty("replicas", "1"));
+        if (replicas < 1) {
+            throw new IllegalArgumentException("Invalid value for replicas: " + replicas);
+        }
+        long seed = Long.parseLong(base.getProperty("seed", "1"));
+        List<Properties> replicated = new ArrayList<>();
+        for (Properties world : worlds) {
+            for (int r = 0; r < replicas; r++) {
+                Properties copy = new Properties();
+                copy.putAll(world);
+                copy.setProperty("seed", String.valueOf(seed + r));
+                replicated.add(copy);
+            }
+        }
+        return replicated;
+    }
+
+    /**
+     * Step every world a number of times, sampling the observables after each step.
+     *
+     * @return the wall-clock time taken, in nanoseconds
+     */
+    long run(int steps, double deltaT) {
+        long start = System.nanoTime();
+        long first = samples;
+        forEachWorld((from, to) -> {
+            for (int w = from; w < to; w++) {
+                Model world = worlds[w];
+                for (int step = 0; step < steps; step++) {
+                    world.advance(deltaT);
+                    monitors[w].check(world.balls, (first + step) * deltaT);
+                    sample(w);
+                }
+            }
+        });
+        samples += steps;
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Run body over the worlds, one world per task so that idle threads can steal them.
+     */
+    private void forEachWorld(ParallelPhysicsEngine.RangeBody body) {
+        pool.invoke(new ParallelPhysicsEngine.RangeTask(body, 0, worlds.length, 1));
+    }
+
+    /**
+     * Fold the observables of world w, as last checked by its monitor, into its statistics.
+     */
+    private void sample(int w) {
+        InvariantMonitor monitor = monitors[w];
+        int index = w * WORLD_STRIDE;
+        long n = monitor.getChecks();
+        add(index + KINETIC * STATISTICS, n, monitor.getKineticEnergy());
+        add(index + POTENTIAL * STATISTICS, n, monitor.getPotentialEnergy());
+        add(index + HEIGHT * STATISTICS, n, monitor.getCenterOfMassY());
+    }
+
+    /**
+     * Add the n-th value to the statistics at index, with Welford's method.
+     */
+    private void add(int index, long n, double value) {
+        if (n == 1) {
+            statistics[index + MEAN] = value;
+            statistics[index + M2] = 0;
+            statistics[index + MIN] = value;
+            statistics[index + MAX] = value;
+            return;
+        }
+        double delta = value - statistics[index + MEAN];
+        statistics[index + MEAN] += delta / n;
+        statistics[index + M2] += delta * (value - statistics[index + MEAN]);
+        statistics[index + MIN] = Math.min(statistics[index + MIN], value);
+        statistics[index + MAX] = Math.max(statistics[index + MAX], value);
+    }
+
+    int getWorldCount() {
+        return worlds.length;
+    }
+
+    Model getWorld(int w) {
+        return worlds[w];
+    }
+
+    /**
+     * @return the mean of an observable of world w over all samples
+     */
+    double getMean(int w, int observable) {
+        return statistics[w * WORLD_STRIDE + observable * STATISTICS + MEAN];
+    }
+
+    /**
+     * @return the sample variance of an observable of world w
+     */
+    double getVariance(int w, int observable) {
+        return samples > 1 ? statistics[w * WORLD_STRIDE + observable * STATISTICS + M2] / (samples - 1) : 0;
+    }
+
+    double getMin(int w, int observable) {
+        return statistics[w * WORLD_STRIDE + observable * STATISTICS + MIN];
+    }
+
+    double getMax(int w, int observable) {
+        return statistics[w * WORLD_STRIDE + observable * STATISTICS + MAX];
+    }
+
+    /**
+     * Write one CSV row per world: its swept values, the statistics of every observable,
+     * and the largest energy drift.
+     *
+     * @param swept the swept keys, written as the first columns
+     */
+    void writeCsv(Writer writer, List<String> swept) {
+        PrintWriter out = new PrintWriter(writer);
+        out.print("world");
+        for (String key : swept) {
+            out.print("," + key);
+        }
+        out.print(",seed");
+        for (String name : OBSERVABLE_NAMES) {
+            out.print("," + name + "Mean," + name + "Std," + name + "Min," + name + "Max");
+        }
+        out.println(",maxEnergyDrift");
+        for (int w = 0; w < worlds.length; w++) {
+            out.print(w);
+            for (String key : swept) {
+                out.print("," + settings[w].getProperty(key));
+            }
+            out.print("," + settings[w].getProperty("seed"));
+            for (int o = 0; o < OBSERVABLES; o++) {
+                out.printf(Locale.ROOT, ",%.9g,%.9g,%.9g,%.9g",
+                        getMean(w, o), Math.sqrt(getVariance(w, o)), getMin(w, o), getMax(w, o));
+            }
+            out.printf(Locale.ROOT, ",%.3g%n", monitors[w].getMaxEnergyDrift());
+        }
+        out.flush();
+    }
+
+    public static void main(String[] args) throws IOException {
+        Properties properties = HeadlessRunner.readArguments(args);
+        double deltaT = Double.parseDouble(properties.getProperty("dt", String.valueOf(1.0 / 60)));
+        int steps = Integer.parseInt(properties.getProperty("steps", "1000"));
+        if (properties.containsKey("time")) {
+            steps = (int) Math.ceil(Double.parseDouble(properties.getProperty("time")) / deltaT);
+        }
+        int threads = Integer.parseInt(properties.getProperty("poolThreads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        List<String> swept = new ArrayList<>();
+        for (String key : new TreeSet<>(properties.stringPropertyNames())) {
+            if (key.startsWith("sweep.")) {
+                swept.add(key.substring("sweep.".length()));
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            long start = System.nanoTime();
+            EnsembleRunner ensemble = new EnsembleRunner(sweep(properties), pool);
+            long created = System.nanoTime();
+            long nanos = ensemble.run(steps, deltaT);
+
+            long ballSteps = 0;
+            for (int w = 0; w < ensemble.getWorldCount(); w++) {
+                ballSteps += (long) ensemble.getWorld(w).balls.size() * steps;
+            }
+            System.err.printf(Locale.ROOT, "Created %d worlds in %.3f s, simulated %d steps each in %.3f s on %d threads%n",
+                    ensemble.getWorldCount(), (created - start) / 1e9, steps, nanos / 1e9, threads);
+            System.err.printf(Locale.ROOT, "World-steps/s: %.1f, ball-steps/s: %.4g%n",
+                    (double) ensemble.getWorldCount() * steps / (nanos / 1e9), ballSteps / (nanos / 1e9));
+
+            String output = properties.getProperty("output");
+            if (output != null) {
+                try (Writer writer = Files.newBufferedWriter(Paths.get(output))) {
+                    ensemble.writeCsv(writer, swept);
+                }
+            } else {
+                ensemble.writeCsv(new PrintWriter(System.out), swept);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,438 @@
+package bouncing_balls;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * A physics engine that moves balls from collision to collision instead of in fixed steps.
+ *
+ * Between collisions every ball follows an exact parabola under gravity and the other
+ * constant fields, in any direction or none at all, so the time of impact of a pair, or of
+ * a ball and a wall, can be solved for exactly. Fields that vary from ball to ball, such as
+ * drag or attraction, are not supported. The predicted
+ * impacts are kept in a priority queue, and the engine repeatedly takes the earliest one,
+ * moves the balls involved up to it and lets them bounce. Balls not involved in an event
+ * are left at the time of their last event and only moved when needed, so an event costs
+ * time proportional to the balls it concerns rather than to all balls.
+ *
+ * When a ball bounces, the events predicted for it are outdated. Instead of removing
+ * them from the queue, every ball counts its bounces and an event is skipped when the
+ * counts it was predicted with no longer match.
+ *
+ * To avoid predicting every pair, candidates are found once per update with the broad
+ * phase, with every radius grown by how far a ball can travel during the update at the
+ * current top speed. A ball that becomes faster than that in a collision is tested against
+ * all balls from then on. Collisions are perfectly elastic, so balls never tunnel through
+ * each other or the walls and energy is conserved exactly, whatever the time step.
+ *
+ * This works best for sparse, fast gases. In dense piles the events pile up, so after
+ * maxEventsPerBall events per ball in one update the rest of the update falls back to a
+ * regular fixed step.
+ *
+ * With {@link EngineMetrics} set, finding the candidates and predicting the first events
+ * is timed as integration, and the event loop as collision, including a fixed step it falls
+ * back to. The candidate pairs are those of the broad phase, the contacts are the
+ * collisions between balls and the wall hits those with the walls.
+ */
+public class EventDrivenPhysicsEngine extends PhysicsEngine {
+
+    /** Ball index used for events with a left or right wall */
+    private static final int VERTICAL_WALL = -1;
+
+    /** Ball index used for events with the floor or the ceiling */
+    private static final int HORIZONTAL_WALL = -2;
+
+    /** Upper bound on events per ball in one update, before falling back to a fixed step */
+    int maxEventsPerBall = 64;
+
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+
+    /** Time, within the current update, that each ball has been moved to */
+    private double[] time = new double[0];
+
+    /** Number of bounces of each ball, to detect outdated events */
+    private int[] bounces = new int[0];
+
+    /** Candidate partners of each ball, neighbours[neighbourStart[i]] until neighbourStart[i + 1] */
+    private int[] neighbourStart = new int[0];
+    private int[] neighbours = new int[0];
+
+    /** Candidate pairs found by the broad phase, before they are grouped per ball */
+    private int[] pairs = new int[0];
+    private int pairCount;
+
+    /** Radii grown by the distance a ball can travel during the update */
+    private double[] reach = new double[0];
+
+    /** Balls that got faster than speedBound, and are tested against all balls */
+    private boolean[] fast = new boolean[0];
+    private int[] fastBalls = new int[0];
+    private int fastCount;
+
+    /** Speed used to find the candidate pairs of the current update */
+    private double speedBound;
+
+    /** Number of events handled since the engine was created */
+    private long eventCount;
+
+    /** Acceleration of every ball during the current update */
+    private double accelerationX;
+    private double accelerationY;
+
+    public EventDrivenPhysicsEngine(double areaWidth, double areaHeight) {
+        super(areaWidth, areaHeight);
+    }
+
+    /**
+     * Advance all balls in the store by deltaT, handling every collision at its exact time.
+     */
+    @Override
+    public void update(BallStore balls, double deltaT) {
+        ForcePipeline forces = getForces();
+        if (!forces.isConstant()) {
+            throw new IllegalArgumentException("The event-driven engine only supports constant fields");
+        }
+        accelerationX = forces.getConstantX();
+        accelerationY = forces.getConstantY();
+        EngineMetrics metrics = getMetrics();
+        long bytes = metrics != null ? EngineMetrics.allocatedBytes() : 0;
+        long start = metrics != null ? System.nanoTime() : 0;
+        int n = balls.size();
+        ensureCapacity(n);
+        Arrays.fill(time, 0, n, 0);
+        Arrays.fill(bounces, 0, n, 0);
+        Arrays.fill(fast, 0, n, false);
+        fastCount = 0;
+        events.clear();
+
+        findCandidates(balls, deltaT);
+        for (int i = 0; i < n; i++) {
+            predictWalls(balls, i, deltaT);
+            for (int k = neighbourStart[i]; k < neighbourStart[i + 1]; k++) {
+                if (neighbours[k] > i) {
+                    predictPair(balls, i, neighbours[k], deltaT);
+                }
+            }
+        }
+
+        long predicted = metrics != null ? System.nanoTime() : 0;
+
+        long maxEvents = (long) maxEventsPerBall * n;
+        long handled = 0;
+        long wallHits = 0;
+        long contacts = 0;
+        double now = 0;
+        Event event;
+        while ((event = events.poll()) != null) {
+            if (!event.isValid(bounces)) {
+                continue;
+            }
+            if (++handled > maxEvents) {
+                // Too many events, finish the update with a fixed step
+                moveAll(balls, now);
+                if (metrics == null) {
+                    super.update(balls, deltaT - now);
+                    return;
+                }
+                // Measured as part of this update rather than as an update of its own
+                setMetrics(null);
+                try {
+                    super.update(balls, deltaT - now);
+                } finally {
+                    setMetrics(metrics);
+                }
+                record(metrics, start, predicted, bytes, wallHits, contacts);
+                return;
+            }
+            now = event.time;
+            eventCount++;
+            moveTo(balls, event.a, now);
+            if (event.b == VERTICAL_WALL) {
+                balls.vx[event.a] = -balls.vx[event.a];
+                wallHits++;
+            } else if (event.b == HORIZONTAL_WALL) {
+                balls.vy[event.a] = -balls.vy[event.a];
+                wallHits++;
+            } else {
+                moveTo(balls, event.b, now);
+                bounce(balls, event.a, event.b);
+                contacts++;
+            }
+            afterBounce(balls, event.a, deltaT);
+            if (event.b >= 0) {
+                afterBounce(balls, event.b, deltaT);
+            }
+        }
+        moveAll(balls, deltaT);
+        if (metrics != null) {
+            record(metrics, start, predicted, bytes, wallHits, contacts);
+        }
+    }
+
+    private void record(EngineMetrics metrics, long start, long predicted, long bytes, long wallHits, long contacts) {
+        long end = System.nanoTime();
+        metrics.recordPhase(EngineMetrics.Phase.INTEGRATE, predicted - start);
+        metrics.recordPhase(EngineMetrics.Phase.COLLIDE, end - predicted);
+        metrics.recordPhase(EngineMetrics.Phase.STEP, end - start);
+        metrics.recordStep(pairCount, contacts, wallHits, EngineMetrics.allocatedBytes() - bytes);
+    }
+
+    /**
+     * Collisions are found at their exact time, so there is no need for sub-steps.
+     */
+    @Override
+    boolean needsSubSteps() {
+        return false;
+    }
+
+    /**
+     * @return the number of events handled since the engine was created
+     */
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * Find the candidate pairs for this update, and group them per ball.
+     */
+    private void findCandidates(BallStore balls, double deltaT) {
+        int n = balls.size();
+        double maxSpeedSquared = 0;
+        for (int i = 0; i < n; i++) {
+            maxSpeedSquared = Math.max(maxSpeedSquared, balls.vx[i] * balls.vx[i] + balls.vy[i] * balls.vy[i]);
+        }
+        // The fields change both balls of a pair alike, but the walls can turn a ball around
+        speedBound = Math.sqrt(maxSpeedSquared) + Math.hypot(accelerationX, accelerationY) * deltaT;
+        for (int i = 0; i < n; i++) {
+            reach[i] = balls.radius[i] + speedBound * deltaT;
+        }
+
+        pairCount = 0;
+        getBroadPhase().findPairs(balls.x, balls.y, reach, n, (i, j) -> {
+            if (2 * pairCount + 2 > pairs.length) {
+                pairs = Arrays.copyOf(pairs, Math.max(16, pairs.length * 2));
+            }
+            pairs[2 * pairCount] = i;
+            pairs[2 * pairCount + 1] = j;
+            pairCount++;
+        });
+
+        // Group the pairs per ball with a counting sort
+        Arrays.fill(neighbourStart, 0, n + 1, 0);
+        for (int k = 0; k < 2 * pairCount; k++) {
+            neighbourStart[pairs[k] + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            neighbourStart[i + 1] += neighbourStart[i];
+        }
+        if (neighbours.length < 2 * pairCount) {
+            neighbours = new int[2 * pairCount];
+        }
+        for (int k = 0; k < pairCount; k++) {
+            int i = pairs[2 * k];
+            int j = pairs[2 * k + 1];
+            neighbours[neighbourStart[i]++] = j;
+            neighbours[neighbourStart[j]++] = i;
+        }
+        for (int i = n; i > 0; i--) {
+            neighbourStart[i] = neighbourStart[i - 1];
+        }
+        neighbourStart[0] = 0;
+    }
+
+    /**
+     * Predict new events for a ball whose velocity has just changed.
+     */
+    private void afterBounce(BallStore balls, int i, double deltaT) {
+        bounces[i]++;
+        double speedSquared = balls.vx[i] * balls.vx[i] + balls.vy[i] * balls.vy[i];
+        if (!fast[i] && speedSquared > speedBound * speedBound) {
+            fast[i] = true;
+            fastBalls[fastCount++] = i;
+        }
+
+        predictWalls(balls, i, deltaT);
+        if (fast[i]) {
+            for (int j = 0; j < balls.size(); j++) {
+                if (j != i) {
+                    predictPair(balls, i, j, deltaT);
+                }
+            }
+            return;
+        }
+        for (int k = neighbourStart[i]; k < neighbourStart[i + 1]; k++) {
+            predictPair(balls, i, neighbours[k], deltaT);
+        }
+        for (int k = 0; k < fastCount; k++) {
+            if (fastBalls[k] != i) {
+                predictPair(balls, i, fastBalls[k], deltaT);
+            }
+        }
+    }
+
+    /**
+     * Predict when ball i hits a wall, if it does before the end of the update.
+     */
+    private void predictWalls(BallStore balls, int i, double deltaT) {
+        double areaWidth = getAreaWidth();
+        double areaHeight = getAreaHeight();
+        double r = balls.radius[i];
+        double x = balls.x[i];
+        double y = balls.y[i];
+        double vx = balls.vx[i];
+        double vy = balls.vy[i];
+
+        // Left and right walls
+        schedule(time[i] + Math.min(wallTime(x - r, vx, accelerationX),
+                wallTime(areaWidth - r - x, -vx, -accelerationX)), i, VERTICAL_WALL, deltaT);
+
+        // Floor and ceiling
+        schedule(time[i] + Math.min(wallTime(y - r, vy, accelerationY),
+                wallTime(areaHeight - r - y, -vy, -accelerationY)), i, HORIZONTAL_WALL, deltaT);
+    }
+
+    /**
+     * Time until a ball reaches a wall, solving h + v t + a t^2 / 2 = 0, where h is the
+     * distance of its center from the closest position it can have to the wall, and v and
+     * a are its speed and acceleration away from the wall.
+     */
+    static double wallTime(double h, double v, double a) {
+        if (h <= 0 && (v < 0 || v == 0 && a < 0)) {
+            return 0;
+        }
+        double discriminant = v * v - 2 * a * h;
+        if (discriminant < 0) {
+            return Double.POSITIVE_INFINITY; // turns back before reaching it
+        }
+        if (a < 0) {
+            // The later root, the earlier one is in the past or the bounce just handled
+            return (v + Math.sqrt(discriminant)) / -a;
+        }
+        if (v >= 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        // The earlier root, in a form that holds for a = 0 too
+        return 2 * h / (-v + Math.sqrt(discriminant));
+    }
+
+    /**
+     * Predict when balls i and j collide, if they do before the end of the update.
+     * The fields accelerate both balls alike, so they move in straight lines relative to each other.
+     */
+    private void predictPair(BallStore balls, int i, int j, double deltaT) {
+        double t = Math.max(time[i], time[j]);
+        double ti = t - time[i];
+        double tj = t - time[j];
+        double dx = (balls.x[j] + balls.vx[j] * tj + accelerationX / 2 * tj * tj)
+                - (balls.x[i] + balls.vx[i] * ti + accelerationX / 2 * ti * ti);
+        double dy = (balls.y[j] + balls.vy[j] * tj + accelerationY / 2 * tj * tj)
+                - (balls.y[i] + balls.vy[i] * ti + accelerationY / 2 * ti * ti);
+        double dvx = (balls.vx[j] + accelerationX * tj) - (balls.vx[i] + accelerationX * ti);
+        double dvy = (balls.vy[j] + accelerationY * tj) - (balls.vy[i] + accelerationY * ti);
+
+        double b = dx * dvx + dy * dvy;
+        if (b >= 0) {
+            return; // moving apart
+        }
+        double a = dvx * dvx + dvy * dvy;
+        double radii = balls.radius[i] + balls.radius[j];
+        double c = dx * dx + dy * dy - radii * radii;
+        double discriminant = b * b - a * c;
+        if (discriminant < 0) {
+            return; // passing each other
+        }
+        double toi = c <= 0 ? 0 : c / (-b + Math.sqrt(discriminant));
+        schedule(t + toi, Math.min(i, j), Math.max(i, j), deltaT);
+    }
+
+    private void schedule(double time, int a, int b, double deltaT) {
+        if (time <= deltaT) {
+            events.add(new Event(time, a, b, bounces[a], b >= 0 ? bounces[b] : 0));
+        }
+    }
+
+    /**
+     * Exchange the normal components of the velocities of two touching balls,
+     * conserving momentum and energy.
+     */
+    private static void bounce(BallStore balls, int i, int j) {
+        double dx = balls.x[j] - balls.x[i];
+        double dy = balls.y[j] - balls.y[i];
+        double distance = Math.sqrt(dx * dx + dy * dy);
+        if (distance == 0) {
+            return;
+        }
+        double nx = dx / distance;
+        double ny = dy / distance;
+        double v1n = balls.vx[i] * nx + balls.vy[i] * ny;
+        double v2n = balls.vx[j] * nx + balls.vy[j] * ny;
+        double m1 = balls.mass[i];
+        double m2 = balls.mass[j];
+        double newV1n = ((m1 - m2) * v1n + 2 * m2 * v2n) / (m1 + m2);
+        double newV2n = ((m2 - m1) * v2n + 2 * m1 * v1n) / (m1 + m2);
+        balls.vx[i] += (newV1n - v1n) * nx;
+        balls.vy[i] += (newV1n - v1n) * ny;
+        balls.vx[j] += (newV2n - v2n) * nx;
+        balls.vy[j] += (newV2n - v2n) * ny;
+    }
+
+    /**
+     * Move ball i along its parabola up to time t.
+     */
+    private void moveTo(BallStore balls, int i, double t) {
+        double dt = t - time[i];
+        balls.x[i] += balls.vx[i] * dt + accelerationX / 2 * dt * dt;
+        balls.y[i] += balls.vy[i] * dt + accelerationY / 2 * dt * dt;
+        balls.vx[i] += accelerationX * dt;
+        balls.vy[i] += accelerationY * dt;
+        time[i] = t;
+    }
+
+    private void moveAll(BallStore balls, double t) {
+        for (int i = 0; i < balls.size(); i++) {
+            moveTo(balls, i, t);
+        }
+    }
+
+    private void ensureCapacity(int n) {
+        if (time.length < n) {
+            time = new double[n];
+            bounces = new int[n];
+            reach = new double[n];
+            fast = new boolean[n];
+            fastBalls = new int[n];
+            neighbourStart = new int[n + 1];
+        }
+    }
+
+    /**
+     * A predicted impact of ball a with ball b, or with a wall when b is negative.
+     */
+    private static class Event implements Comparable<Event> {
+        final double time;
+        final int a;
+        final int b;
+        final int bouncesA;
+        final int bouncesB;
+
+        Event(double time, int a, int b, int bouncesA, int bouncesB) {
+            this.time = time;
+            this.a = a;
+            this.b = b;
+            this.bouncesA = bouncesA;
+            this.bouncesB = bouncesB;
+        }
+
+        /**
+         * @return false if one of the balls has bounced since the event was predicted
+         */
+        boolean isValid(int[] bounces) {
+            return bounces[a] == bouncesA && (b < 0 || bounces[b] == bouncesB);
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            return Double.compare(time, other.time);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package bouncing_balls;
+
+/**
+ * A source of acceleration for the balls of a {@link BallStore}, such as wind, drag or an attractor.
+ *
+ * Fields are called once per block of balls rather than once per ball, and add the
+ * acceleration of each ball in the block to buffers indexed from the start of the block.
+ * The same field may be called for different blocks from several threads at once, so
+ * it must not change its own state while accumulating.
+ *
+ * @see ForcePipeline
+ */
+public interface ForceField {
+
+    /**
+     * Add the acceleration of the balls with index from (inclusive) to to (exclusive)
+     * to ax[i - from] and ay[i - from].
+     */
+    void accumulate(BallStore balls, int from, int to, double[] ax, double[] ay);
+
+    /**
+     * Called once per update before any call to accumulate, on the updating thread, so that
+     * fields depending on all balls can gather them while the balls are not moving.
+     */
+    default void prepare(BallStore balls) {
+    }
+}
@@ -0,0 +1,225 @@
+package bouncing_balls;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The force fields acting on the balls of a {@link PhysicsEngine}, applied to the velocities
+ * in one pass.
+ *
+ * Gravity and the other {@link ConstantField}s are added up into one constant acceleration
+ * when the fields change. When only constant fields are active, the engine adds that
+ * acceleration directly, as fast as gravity alone. Other fields are applied block by block:
+ * for a block of balls small enough to stay in cache, every field adds to a reused
+ * acceleration buffer, and then the velocities of the block are updated once, so the ball
+ * arrays are read once no matter how many fields there are.
+ *
+ * An integrator that kicks the velocities both before and after the balls move evaluates the
+ * fields at the same positions for the closing kick of one update and the first kick of the
+ * next. The closing kick can therefore record the accelerations per ball, and the next first
+ * kick reuse them instead of evaluating the fields again. The recording is dropped when the
+ * fields change, and only reused for the same store while nothing but the engine has
+ * modified it, see {@link BallStore#getModifications()}.
+ */
+public class ForcePipeline {
+
+    /** Number of balls whose accelerations are gathered before updating their velocities */
+    static final int BLOCK = 256;
+
+    /** Acceleration buffers of each thread, for x and y */
+    private static final ThreadLocal<double[][]> BUFFERS =
+            ThreadLocal.withInitial(() -> new double[][] {new double[BLOCK], new double[BLOCK]});
+
+    private double gravity = PhysicsEngine.GRAVITY;
+    private final List<ForceField> added = new ArrayList<>();
+
+    /** Sum of gravity and the constant fields */
+    private double constantX;
+    private double constantY = PhysicsEngine.GRAVITY;
+    /** The fields that are not constant */
+    private ForceField[] fields = new ForceField[0];
+
+    /** Accelerations recorded by the last closing kick, per ball, and the store they belong to */
+    private double[] recordedX = new double[0];
+    private double[] recordedY = new double[0];
+    private BallStore recordedStore;
+    private int recordedModifications;
+
+    /**
+     * Set the vertical acceleration of gravity, negative for downwards.
+     */
+    public void setGravity(double gravity) {
+        this.gravity = gravity;
+        combine();
+    }
+
+    public double getGravity() {
+        return gravity;
+    }
+
+    public void add(ForceField field) {
+        added.add(field);
+        combine();
+    }
+
+    public void remove(ForceField field) {
+        added.remove(field);
+        combine();
+    }
+
+    /**
+     * Remove all fields except gravity.
+     */
+    public void clear() {
+        added.clear();
+        combine();
+    }
+
+    private void combine() {
+        constantX = 0;
+        constantY = gravity;
+        List<ForceField> varying = new ArrayList<>();
+        for (ForceField field : added) {
+            if (field instanceof ConstantField) {
+                constantX += ((ConstantField) field).accelerationX;
+                constantY += ((ConstantField) field).accelerationY;
+            } else {
+                varying.add(field);
+            }
+        }
+        fields = varying.toArray(new ForceField[0]);
+        forgetRecorded();
+    }
+
+    /**
+     * @return whether every ball gets the same acceleration
+     */
+    boolean isConstant() {
+        return fields.length == 0;
+    }
+
+    /**
+     * @return the x-component of the sum of gravity and the constant fields
+     */
+    double getConstantX() {
+        return constantX;
+    }
+
+    /**
+     * @return the y-component of the sum of gravity and the constant fields
+     */
+    double getConstantY() {
+        return constantY;
+    }
+
+    /**
+     * Let the fields gather the balls before an update, see {@link ForceField#prepare(BallStore)}.
+     */
+    void prepare(BallStore balls) {
+        for (ForceField field : fields) {
+            field.prepare(balls);
+        }
+    }
+
+    /**
+     * Add the acceleration of all fields over deltaT to the velocities of the awake balls
+     * with index from (inclusive) to to (exclusive).
+     */
+    void apply(BallStore balls, int from, int to, double deltaT) {
+        apply(balls, from, to, deltaT, false);
+    }
+
+    /**
+     * Prepare to record the accelerations of every ball of a store, before calling
+     * {@link #applyAndRecord(BallStore, int, int, double)} on its ranges.
+     */
+    void startRecording(BallStore balls) {
+        int n = balls.size();
+        if (recordedX.length < n) {
+            recordedX = new double[n];
+            recordedY = new double[n];
+        }
+        recordedStore = balls;
+        recordedModifications = balls.getModifications();
+    }
+
+    /**
+     * Do the same as {@link #apply(BallStore, int, int, double)}, and keep the accelerations of
+     * the balls for {@link #applyRecorded(BallStore, int, int, double)}.
+     */
+    void applyAndRecord(BallStore balls, int from, int to, double deltaT) {
+        apply(balls, from, to, deltaT, true);
+    }
+
+    /**
+     * @return whether the accelerations of all balls of the store have been recorded since the
+     * fields or the balls last changed
+     */
+    boolean hasRecorded(BallStore balls) {
+        return recordedStore == balls && recordedModifications == balls.getModifications();
+    }
+
+    /**
+     * Keep the recorded accelerations valid through the modifications the engine made to
+     * the balls after the closing kick of an update, such as collisions handled through views.
+     */
+    void keepRecorded(BallStore balls) {
+        if (recordedStore == balls) {
+            recordedModifications = balls.getModifications();
+        }
+    }
+
+    /**
+     * Add the recorded accelerations over deltaT to the velocities of the awake balls with index
+     * from (inclusive) to to (exclusive).
+     */
+    void applyRecorded(BallStore balls, int from, int to, double deltaT) {
+        double[] vx = balls.vx;
+        double[] vy = balls.vy;
+        boolean[] asleep = balls.asleep;
+        for (int i = from; i < to; i++) {
+            if (!asleep[i]) {
+                vx[i] += recordedX[i] * deltaT;
+                vy[i] += recordedY[i] * deltaT;
+            }
+        }
+    }
+
+    /**
+     * Drop the recorded accelerations, so the next first kick evaluates the fields again.
+     */
+    void forgetRecorded() {
+        recordedStore = null;
+    }
+
+    private void apply(BallStore balls, int from, int to, double deltaT, boolean record) {
+        double[][] buffers = BUFFERS.get();
+        double[] ax = buffers[0];
+        double[] ay = buffers[1];
+        double[] vx = balls.vx;
+        double[] vy = balls.vy;
+        boolean[] asleep = balls.asleep;
+        ForceField[] fields = this.fields;
+        for (int start = from; start < to; start += BLOCK) {
+            int end = Math.min(start + BLOCK, to);
+            int length = end - start;
+            for (int k = 0; k < length; k++) {
+                ax[k] = constantX;
+                ay[k] = constantY;
+            }
+            for (ForceField field : fields) {
+                field.accumulate(balls, start, end, ax, ay);
+            }
+            if (record) {
+                System.arraycopy(ax, 0, recordedX, start, length);
+                System.arraycopy(ay, 0, recordedY, start, length);
+            }
+            for (int i = start; i < end; i++) {
+                if (!asleep[i]) {
+                    vx[i] += ax[i - start] * deltaT;
+                    vy[i] += ay[i - start] * deltaT;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package bouncing_balls;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Properties;
+
+import javax.management.JMException;
+
+/**
+ * Runs a simulation without a window, as fast as the CPU allows.
+ *
+ * Usage: {@code HeadlessRunner [scenario.properties] [key=value ...]}
+ *
+ * Besides the keys of {@link Scenario}, the following keys control the run:
+ * <pre>
+ * steps    number of steps to run (1000)
+ * time     simulated time in seconds, overrides steps when given
+ * dt       time step in seconds (1/60)
+ * output   file to write the final state of the balls to, as CSV
+ * snapshot file to record every step to, see {@link SnapshotWriter}
+ * snapshotFrames  number of most recent steps kept in the snapshot file (all steps)
+ * trajectory       file to stream the positions of every step to, see {@link TrajectoryWriter}
+ * trajectoryPrecision  precision of the streamed positions in meters (0.0001)
+ * keyframeInterval number of steps between full frames in the trajectory (100)
+ * metrics  file to write per-phase metrics to, as CSV if it ends with .csv and JSON otherwise
+ * jmx      name to publish the metrics under over JMX, see {@link EngineMetrics#register(String)}
+ * energyDrift    relative energy drift to warn about, checked every step, see {@link InvariantMonitor}
+ * momentumDrift  change in momentum in kg m/s to warn about, checked every step
+ * </pre>
+ * When done, the throughput and the final energy and momentum are printed.
+ */
+public class HeadlessRunner {
+
+    private final Model model;
+
+    /** Records every step when set */
+    SnapshotWriter snapshot;
+
+    /** Streams the positions of every step when set */
+    TrajectoryWriter trajectory;
+
+    /** Checks energy and momentum after every step when set */
+    InvariantMonitor monitor;
+
+    HeadlessRunner(Model model) {
+        this.model = model;
+    }
+
+    /**
+     * Step the model a number of times.
+     *
+     * @return the wall-clock time taken, in nanoseconds
+     */
+    long run(int steps, double deltaT) throws IOException {
+        long start = System.nanoTime();
+        for (int i = 0; i < steps; i++) {
+            model.advance(deltaT);
+            if (snapshot != null) {
+                snapshot.append((i + 1) * deltaT);
+            }
+            if (trajectory != null) {
+                trajectory.append(model.balls, (i + 1) * deltaT);
+            }
+            if (monitor != null) {
+                monitor.check(model.balls, (i + 1) * deltaT);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Print the throughput of a run, and the energy and momentum of the final state.
+     */
+    void report(int steps, double deltaT, long nanos) {
+        BallStore balls = model.balls;
+        double seconds = nanos / 1e9;
+        InvariantMonitor state = new InvariantMonitor();
+        state.setGravity(model.physicsEngine.getForces().getGravity());
+        state.check(balls, steps * deltaT);
+
+        System.out.printf(Locale.ROOT, "Simulated %d steps (%.3f s) of %d balls in %.3f s%n",
+                steps, steps * deltaT, balls.size(), seconds);
+        System.out.printf(Locale.ROOT, "Steps/s: %.1f, ball-steps/s: %.4g%n",
+                steps / seconds, (double) steps * balls.size() / seconds);
+        System.out.printf(Locale.ROOT, "Kinetic energy: %.6g J, potential energy: %.6g J, total: %.6g J%n",
+                state.getKineticEnergy(), state.getPotentialEnergy(), state.getEnergy());
+        System.out.printf(Locale.ROOT, "Momentum: (%.6g, %.6g) kg m/s%n", state.getMomentumX(), state.getMomentumY());
+        if (monitor != null) {
+            System.out.printf(Locale.ROOT, "Energy drift: %.3g (max %.3g), momentum drift: %.6g (max %.6g) kg m/s%n",
+                    monitor.getEnergyDrift(), monitor.getMaxEnergyDrift(),
+                    monitor.getMomentumDrift(), monitor.getMaxMomentumDrift());
+        }
+    }
+
+    /**
+     * Write the state of every ball as CSV.
+     */
+    void writeState(Path file) throws IOException {
+        BallStore balls = model.balls;
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+            out.println("x,y,vx,vy,radius,mass");
+            for (int i = 0; i < balls.size(); i++) {
+                out.printf(Locale.ROOT, "%.17g,%.17g,%.17g,%.17g,%.17g,%.17g%n", balls.x[i], balls.y[i],
+                        balls.vx[i], balls.vy[i], balls.radius[i], balls.mass[i]);
+            }
+        }
+    }
+
+    /**
+     * Read command line arguments: properties files, and key=value pairs that override them.
+     */
+    static Properties readArguments(String[] args) throws IOException {
+        Properties properties = new Properties();
+        for (String arg : args) {
+            int split = arg.indexOf('=');
+            if (split < 0) {
+                // A scenario file, read before the key=value overrides
+                Properties file = new Properties();
+                try (Reader reader = Files.newBufferedReader(Paths.get(arg))) {
+                    file.load(reader);
+                }
+                file.forEach(properties::putIfAbsent);
+            } else {
+                properties.setProperty(arg.substring(0, split), arg.substring(split + 1));
+            }
+        }
+        return properties;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Properties properties = readArguments(args);
+
+        Scenario scenario = Scenario.fromProperties(properties);
+        double deltaT = Double.parseDouble(properties.getProperty("dt", String.valueOf(1.0 / 60)));
+        int steps = Integer.parseInt(properties.getProperty("steps", "1000"));
+        if (properties.containsKey("time")) {
+            steps = (int) Math.ceil(Double.parseDouble(properties.getProperty("time")) / deltaT);
+        }
+
+        Model model = scenario.createModel();
+        HeadlessRunner runner = new HeadlessRunner(model);
+        if (properties.containsKey("energyDrift") || properties.containsKey("momentumDrift")) {
+            runner.monitor = new InvariantMonitor();
+            runner.monitor.setGravity(model.physicsEngine.getForces().getGravity());
+            runner.monitor.setEnergyThreshold(
+                    Double.parseDouble(properties.getProperty("energyDrift", String.valueOf(Double.POSITIVE_INFINITY))));
+            runner.monitor.setMomentumThreshold(
+                    Double.parseDouble(properties.getProperty("momentumDrift", String.valueOf(Double.POSITIVE_INFINITY))));
+            runner.monitor.setAlertHandler((invariant, time, drift) -> System.err.printf(Locale.ROOT,
+                    "Warning: %s drifted by %.3g at %.3f s%n", invariant, drift, time));
+            runner.monitor.check(model.balls, 0);
+        }
+        String metricsFile = properties.getProperty("metrics");
+        String jmxName = properties.getProperty("jmx");
+        EngineMetrics metrics = null;
+        if (metricsFile != null || jmxName != null) {
+            metrics = new EngineMetrics();
+            model.physicsEngine.setMetrics(metrics);
+            if (jmxName != null) {
+                try {
+                    metrics.register(jmxName);
+                } catch (JMException e) {
+                    throw new IllegalArgumentException("Cannot publish metrics as " + jmxName, e);
+                }
+            }
+        }
+        String snapshot = properties.getProperty("snapshot");
+        if (snapshot != null) {
+            int frames = Integer.parseInt(properties.getProperty("snapshotFrames", String.valueOf(steps + 1)));
+            runner.snapshot = new SnapshotWriter(Paths.get(snapshot), model.balls, model.areaWidth, model.areaHeight, frames);
+            runner.snapshot.append(0);
+        }
+        String trajectory = properties.getProperty("trajectory");
+        if (trajectory != null) {
+            double precision = Double.parseDouble(properties.getProperty("trajectoryPrecision", "0.0001"));
+            int keyframeInterval = Integer.parseInt(properties.getProperty("keyframeInterval", "100"));
+            runner.trajectory = new TrajectoryWriter(Files.newOutputStream(Paths.get(trajectory)),
+                    model.balls.size(), precision, keyframeInterval, 4);
+            runner.trajectory.append(model.balls, 0);
+        }
+        long nanos = runner.run(steps, deltaT);
+        runner.report(steps, deltaT, nanos);
+        if (runner.snapshot != null) {
+            runner.snapshot.close();
+        }
+        if (runner.trajectory != null) {
+            runner.trajectory.close();
+        }
+
+        if (metricsFile != null) {
+            try (Writer writer = Files.newBufferedWriter(Paths.get(metricsFile))) {
+                if (metricsFile.endsWith(".csv")) {
+                    metrics.writeCsv(writer);
+                } else {
+                    metrics.writeJson(writer);
+                }
+            }
+        }
+
+        String output = properties.getProperty("output");
+        if (output != null) {
+            runner.writeState(Paths.get(output));
+        }
+        model.physicsEngine.close();
+    }
+}
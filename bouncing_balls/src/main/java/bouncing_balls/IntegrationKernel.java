@@ -0,0 +1,18 @@
+package bouncing_balls;
+
+/**
+ * Accelerates, moves and bounces a range of balls of a {@link BallStore} in one pass.
+ * Implementations must give the same result as {@link PhysicsEngine#applyForces(BallStore, int, int, double)}
+ * with only constant fields, followed by {@link PhysicsEngine#updatePositions(BallStore, int, int, double)}.
+ */
+interface IntegrationKernel {
+
+    /**
+     * Integrate the balls with index from (inclusive) to to (exclusive) over deltaT,
+     * with the same acceleration for every ball.
+     *
+     * @return the number of times a ball hit a wall
+     */
+    int integrate(BallStore balls, int from, int to, double deltaT,
+            double accelerationX, double accelerationY, double areaWidth, double areaHeight);
+}
@@ -0,0 +1,23 @@
+package bouncing_balls;
+
+/**
+ * Strategy interface for how a {@link PhysicsEngine} advances velocities and positions over a step.
+ *
+ * A step is split into a kick, where the force fields change the velocities, a drift,
+ * where the balls move with their new velocities and bounce off the walls, and a closing
+ * kick with the forces at the new positions. The integrators differ in how much of the
+ * velocity change of the step is applied before the drift. Both splittings are symplectic,
+ * so the energy error oscillates instead of growing, but the closing kick of velocity
+ * Verlet makes the error second order in the step instead of first order.
+ *
+ * @see SemiImplicitEulerIntegrator
+ * @see VelocityVerletIntegrator
+ */
+public interface Integrator {
+
+    /**
+     * @return the fraction of the velocity change of a step applied before the balls move,
+     * from 0 to 1; the rest is applied after they moved
+     */
+    double firstKick();
+}
@@ -0,0 +1,287 @@
+package bouncing_balls;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Watches the total energy and momentum of the balls of a {@link BallStore} over a run.
+ *
+ * Each {@link #check(BallStore, double)} sums the kinetic and potential energy and the
+ * momentum of all balls, and compares them with the first check. The energy drift is
+ * relative to the first total energy, the momentum drift is the length of the change
+ * in momentum. When a drift goes over its threshold the alert handler is called once,
+ * and again only after the drift has come back under the threshold.
+ *
+ * Walls and gravity change the momentum of the balls, so the momentum threshold is
+ * only useful for scenes where neither acts, and is off by default.
+ *
+ * Large stores are summed on a fork-join pool, each task summing a fixed share of the
+ * balls, and the shares are added in the same order every time, so the result does not
+ * depend on the scheduling. The tasks are created once and reused, so a check is O(n)
+ * and allocates nothing.
+ */
+public class InvariantMonitor {
+
+    /** Names passed to the alert handler */
+    public static final String ENERGY = "energy";
+    public static final String MOMENTUM = "momentum";
+
+    /**
+     * Called when a drift goes over its threshold.
+     */
+    public interface AlertHandler {
+        void alert(String invariant, double time, double drift);
+    }
+
+    /** Number of balls below which the sums are computed on the calling thread */
+    private static final int BALLS_PER_TASK = 16384;
+
+    /** Partial sums of one share of the balls */
+    private static final int KINETIC = 0, MASS_HEIGHT = 1, MOMENTUM_X = 2, MOMENTUM_Y = 3, MASS = 4, SUMS = 5;
+
+    private final ForkJoinPool pool;
+    private final ShareTask[] shares;
+    private final double[] partials;
+    private final RecursiveAction root;
+    private BallStore current;
+
+    private double gravity = PhysicsEngine.GRAVITY;
+    private double energyThreshold = Double.POSITIVE_INFINITY;
+    private double momentumThreshold = Double.POSITIVE_INFINITY;
+    private AlertHandler alertHandler = (invariant, time, drift) -> { };
+
+    private long checks;
+    private double kinetic;
+    private double massHeight;
+    private double totalMass;
+    private double momentumX;
+    private double momentumY;
+    private double initialEnergy;
+    private double initialMomentumX;
+    private double initialMomentumY;
+    private double maxEnergyDrift;
+    private double maxMomentumDrift;
+    private boolean energyAlerted;
+    private boolean momentumAlerted;
+
+    /**
+     * Create a monitor summing large stores on the common fork-join pool.
+     */
+    public InvariantMonitor() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a monitor summing large stores on the given pool.
+     */
+    public InvariantMonitor(ForkJoinPool pool) {
+        this.pool = pool;
+        shares = new ShareTask[pool.getParallelism()];
+        for (int s = 0; s < shares.length; s++) {
+            shares[s] = new ShareTask(s);
+        }
+        partials = new double[shares.length * SUMS];
+        root = new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(shares);
+            }
+        };
+    }
+
+    /**
+     * Set the vertical acceleration of gravity used for the potential energy,
+     * see {@link ForcePipeline#setGravity(double)}.
+     */
+    public void setGravity(double gravity) {
+        this.gravity = gravity;
+    }
+
+    /**
+     * Set the relative energy drift above which to alert, 0.01 for 1%.
+     */
+    public void setEnergyThreshold(double relativeDrift) {
+        energyThreshold = relativeDrift;
+    }
+
+    /**
+     * Set the change in momentum above which to alert, in kg m/s.
+     */
+    public void setMomentumThreshold(double drift) {
+        momentumThreshold = drift;
+    }
+
+    public void setAlertHandler(AlertHandler alertHandler) {
+        this.alertHandler = alertHandler;
+    }
+
+    /**
+     * Sum the energy and momentum of the balls, and compare them with the first check.
+     *
+     * @param time the simulation time, passed on to the alert handler
+     */
+    public void check(BallStore balls, double time) {
+        int n = balls.size();
+        if (n < BALLS_PER_TASK || shares.length == 1) {
+            sum(balls, 0, n, 0);
+            kinetic = partials[KINETIC];
+            massHeight = partials[MASS_HEIGHT];
+            momentumX = partials[MOMENTUM_X];
+            momentumY = partials[MOMENTUM_Y];
+            totalMass = partials[MASS];
+        } else {
+            current = balls;
+            root.reinitialize();
+            for (ShareTask share : shares) {
+                share.reinitialize();
+            }
+            pool.invoke(root);
+            current = null;
+            kinetic = massHeight = momentumX = momentumY = totalMass = 0;
+            for (int s = 0; s < shares.length; s++) {
+                kinetic += partials[s * SUMS + KINETIC];
+                massHeight += partials[s * SUMS + MASS_HEIGHT];
+                momentumX += partials[s * SUMS + MOMENTUM_X];
+                momentumY += partials[s * SUMS + MOMENTUM_Y];
+                totalMass += partials[s * SUMS + MASS];
+            }
+        }
+
+        if (checks++ == 0) {
+            initialEnergy = getEnergy();
+            initialMomentumX = momentumX;
+            initialMomentumY = momentumY;
+        }
+        double energyDrift = Math.abs(getEnergyDrift());
+        double momentumDrift = getMomentumDrift();
+        maxEnergyDrift = Math.max(maxEnergyDrift, energyDrift);
+        maxMomentumDrift = Math.max(maxMomentumDrift, momentumDrift);
+
+        if (energyDrift > energyThreshold != energyAlerted) {
+            energyAlerted = !energyAlerted;
+            if (energyAlerted) {
+                alertHandler.alert(ENERGY, time, getEnergyDrift());
+            }
+        }
+        if (momentumDrift > momentumThreshold != momentumAlerted) {
+            momentumAlerted = !momentumAlerted;
+            if (momentumAlerted) {
+                alertHandler.alert(MOMENTUM, time, momentumDrift);
+            }
+        }
+    }
+
+    /**
+     * Sum the balls with index from (inclusive) to to (exclusive) into share s of the partial sums.
+     */
+    private void sum(BallStore balls, int from, int to, int s) {
+        double[] vx = balls.vx;
+        double[] vy = balls.vy;
+        double[] y = balls.y;
+        double[] mass = balls.mass;
+        double k = 0, my = 0, px = 0, py = 0, total = 0;
+        for (int i = from; i < to; i++) {
+            double m = mass[i];
+            k += m * (vx[i] * vx[i] + vy[i] * vy[i]);
+            my += m * y[i];
+            px += m * vx[i];
+            py += m * vy[i];
+            total += m;
+        }
+        partials[s * SUMS + KINETIC] = 0.5 * k;
+        partials[s * SUMS + MASS_HEIGHT] = my;
+        partials[s * SUMS + MOMENTUM_X] = px;
+        partials[s * SUMS + MOMENTUM_Y] = py;
+        partials[s * SUMS + MASS] = total;
+    }
+
+    /**
+     * Forget all checks, so that the next check becomes the reference.
+     */
+    public void reset() {
+        checks = 0;
+        maxEnergyDrift = 0;
+        maxMomentumDrift = 0;
+        energyAlerted = false;
+        momentumAlerted = false;
+    }
+
+    public long getChecks() {
+        return checks;
+    }
+
+    public double getKineticEnergy() {
+        return kinetic;
+    }
+
+    public double getPotentialEnergy() {
+        return -gravity * massHeight;
+    }
+
+    public double getEnergy() {
+        return kinetic + getPotentialEnergy();
+    }
+
+    /**
+     * @return the height of the centre of mass of the balls
+     */
+    public double getCenterOfMassY() {
+        return totalMass > 0 ? massHeight / totalMass : 0;
+    }
+
+    public double getMomentumX() {
+        return momentumX;
+    }
+
+    public double getMomentumY() {
+        return momentumY;
+    }
+
+    /**
+     * @return the change in total energy since the first check, relative to the first total energy
+     */
+    public double getEnergyDrift() {
+        return initialEnergy == 0 ? 0 : (getEnergy() - initialEnergy) / Math.abs(initialEnergy);
+    }
+
+    /**
+     * @return the length of the change in momentum since the first check
+     */
+    public double getMomentumDrift() {
+        return Math.hypot(momentumX - initialMomentumX, momentumY - initialMomentumY);
+    }
+
+    /**
+     * @return the largest absolute energy drift seen by any check
+     */
+    public double getMaxEnergyDrift() {
+        return maxEnergyDrift;
+    }
+
+    /**
+     * @return the largest momentum drift seen by any check
+     */
+    public double getMaxMomentumDrift() {
+        return maxMomentumDrift;
+    }
+
+    /**
+     * Sums one fixed share of the balls of the store being checked.
+     */
+    @SuppressWarnings("serial")
+    private class ShareTask extends RecursiveAction {
+        private final int share;
+
+        ShareTask(int share) {
+            this.share = share;
+        }
+
+        @Override
+        protected void compute() {
+            int n = current.size();
+            int from = (int) ((long) n * share / shares.length);
+            int to = (int) ((long) n * (share + 1) / shares.length);
+            sum(current, from, to, share);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package bouncing_balls;
+
+/**
+ * The physics model.
+ * 
+ * This class is where you should implement your bouncing balls model.
+ * 
+ * The code has intentionally been kept as simple as possible, but if you wish, you can improve the design.
+ * 
+ * @author Simon Robillard
+ *
+ */
+class Model {
+
+	double areaWidth, areaHeight;
+	
+	BallStore balls;
+
+	PhysicsEngine physicsEngine;
+
+	/** Fixed time step of the simulation, independent of the frame rate */
+	double fixedDeltaT = 1.0 / 120;
+
+	/** Upper bound on the amount of sub-steps per fixed step */
+	int maxSubSteps = 8;
+
+	/** Largest fraction of the smallest radius that a ball may move in one sub-step */
+	double courantNumber = 0.5;
+
+	/** Upper bound on the time simulated per call to step, so that a slow frame cannot snowball; advance ignores it */
+	double maxFrameTime = 0.25;
+
+	/** Simulation time that has been requested but not yet simulated, always less than fixedDeltaT */
+	double accumulator;
+
+	/** Amount of sub-steps used in the last fixed step */
+	int subSteps;
+
+	/** Positions of the balls before the last fixed step, for interpolation */
+	private double[] previousX = new double[0];
+	private double[] previousY = new double[0];
+
+	Model(double width, double height) {
+		areaWidth = width;
+		areaHeight = height;
+		
+		// Initialize the model with a few balls
+		balls = new BallStore(2);
+
+		balls.add(width / 3, height * 0.9, 1, -1, 0.2, 1);
+		balls.add(width / 3.2, height * 0.7, -4, 1, 0.3,2);
+
+		// Initialize the physics engine
+		physicsEngine = new PhysicsEngine(width, height);
+		physicsEngine.setCollisionStrategy(new ProjectionBallCollisionStrategy());
+	}
+
+	/**
+	 * Create a model with the given balls, updated by the given physics engine.
+	 */
+	Model(double width, double height, BallStore balls, PhysicsEngine physicsEngine) {
+		areaWidth = width;
+		areaHeight = height;
+		this.balls = balls;
+		this.physicsEngine = physicsEngine;
+	}
+
+	/**
+	 * Advance the simulation by the wall-clock time deltaT of a frame, at most maxFrameTime,
+	 * so that a slow frame cannot snowball into ever longer frames.
+	 */
+	void step(double deltaT) {
+		advance(Math.min(deltaT, maxFrameTime));
+	}
+
+	/**
+	 * Advance the simulation by deltaT, in fixed steps of fixedDeltaT.
+	 * Time that does not add up to a whole fixed step is carried over to the next call.
+	 */
+	void advance(double deltaT) {
+		accumulator += deltaT;
+		while (accumulator >= fixedDeltaT) {
+			fixedStep();
+			accumulator -= fixedDeltaT;
+		}
+	}
+
+	/**
+	 * Advance the simulation by one fixed step, split into as many sub-steps as the speed of the balls requires.
+	 */
+	private void fixedStep() {
+		int n = balls.size();
+		if (previousX.length < n) {
+			previousX = new double[n];
+			previousY = new double[n];
+		}
+		System.arraycopy(balls.x, 0, previousX, 0, n);
+		System.arraycopy(balls.y, 0, previousY, 0, n);
+
+		subSteps = chooseSubSteps();
+		double subDt = fixedDeltaT / subSteps;
+		for (int i = 0; i < subSteps; i++) {
+			// Update the physics engine
+			physicsEngine.update(balls, subDt);
+		}
+	}
+
+	/**
+	 * Choose the amount of sub-steps so that no ball moves more than courantNumber times
+	 * the smallest radius per sub-step, within the budget of maxSubSteps.
+	 * Engines that find collisions at their exact time do not need sub-steps.
+	 */
+	int chooseSubSteps() {
+		if (!physicsEngine.needsSubSteps()) {
+			return 1;
+		}
+		double maxSpeedSquared = 0;
+		double minRadius = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < balls.size(); i++) {
+			double vx = balls.vx[i];
+			double vy = balls.vy[i];
+			maxSpeedSquared = Math.max(maxSpeedSquared, vx * vx + vy * vy);
+			minRadius = Math.min(minRadius, balls.radius[i]);
+		}
+		// Gravity and other constant fields can speed the balls up during the step
+		ForcePipeline forces = physicsEngine.getForces();
+		double maxSpeed = Math.sqrt(maxSpeedSquared)
+				+ Math.hypot(forces.getConstantX(), forces.getConstantY()) * fixedDeltaT;
+		double steps = Math.ceil(maxSpeed * fixedDeltaT / (courantNumber * minRadius));
+		return (int) Math.max(1, Math.min(maxSubSteps, steps));
+	}
+
+	/**
+	 * @return the x-coordinate of ball i, interpolated between the last two fixed steps
+	 * by the time left in the accumulator
+	 */
+	double interpolatedX(int i) {
+		return interpolate(previousX, balls.x, i);
+	}
+
+	/**
+	 * @return the y-coordinate of ball i, interpolated between the last two fixed steps
+	 * by the time left in the accumulator
+	 */
+	double interpolatedY(int i) {
+		return interpolate(previousY, balls.y, i);
+	}
+
+	private double interpolate(double[] previous, double[] current, int i) {
+		if (i >= previous.length) {
+			return current[i]; // no fixed step taken yet
+		}
+		double alpha = accumulator / fixedDeltaT;
+		return previous[i] + (current[i] - previous[i]) * alpha;
+	}
+}
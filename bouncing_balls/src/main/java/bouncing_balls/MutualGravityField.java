@@ -0,0 +1,560 @@
+package bouncing_balls;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gravitational attraction between the balls themselves, each ball pulling on the others
+ * in proportion to its mass, approximated with a Barnes–Hut quadtree.
+ *
+ * Before each update, {@link #prepare(BallStore)} sorts the balls along a Morton curve and
+ * builds a quadtree over the sorted order: every node covers a contiguous range of balls,
+ * and is split into four while it holds more than {@link #LEAF_SIZE} balls. Each node keeps
+ * the mass and centre of mass of its balls. A ball then walks the tree from the root, and
+ * takes a node as a single body when the node is small compared to its distance, that is
+ * when width / distance is below the opening angle. The nodes containing the ball itself
+ * are always opened, so a ball never pulls on itself, whatever the opening angle. An
+ * opening angle of 0 opens every node and gives the exact sum over all pairs, 0.5 is a
+ * common trade-off. The walk costs O(log n) per ball, so an update costs O(n log n)
+ * instead of O(n^2).
+ *
+ * The tree copies the positions and masses of the balls, so accumulating is safe while
+ * other threads move the balls. The sort and the tree are built from arrays that are only
+ * reallocated when the number of balls grows. Large stores are built on a fork-join pool:
+ * the bounds, keys and radix sort passes each run as one task per share of the balls, and
+ * the subtrees below the top levels are built as separate tasks. Tasks are created once
+ * and reused, and the result does not depend on the number of threads.
+ */
+public class MutualGravityField implements ForceField {
+
+    /** Largest number of balls in a leaf, which is summed directly */
+    static final int LEAF_SIZE = 8;
+
+    /** Depth of the smallest nodes, set by the bits per axis of the Morton keys */
+    static final int MAX_DEPTH = 16;
+
+    /** Depth from which subtrees are built as separate tasks */
+    private static final int TASK_DEPTH = 3;
+
+    /** Number of balls below which the tree is built on the calling thread */
+    private static final int BALLS_PER_TASK = 16384;
+
+    /** Bits of the keys sorted per radix sort pass */
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX = 1 << RADIX_BITS;
+
+    /** Work done by the share tasks */
+    private static final int BOUNDS = 0, KEYS = 1, HISTOGRAM = 2, SCATTER = 3, GATHER = 4;
+
+    /** Stacks of the tree walk of each thread; a walk pushes at most 3 nodes per level and the root's 4 children */
+    private static final ThreadLocal<int[]> STACKS = ThreadLocal.withInitial(() -> new int[3 * MAX_DEPTH + 4]);
+
+    private final double gravitationalConstant;
+    private final double openingAngleSquared;
+    private final double softeningSquared;
+
+    private final ForkJoinPool pool;
+    private final ShareTask[] shares;
+    private final RecursiveAction sharesRoot;
+    private final SubtreeTask[] subtrees = new SubtreeTask[1 << (2 * TASK_DEPTH)];
+    private final RecursiveAction subtreesRoot;
+    private int subtreeCount;
+
+    /** State of the tree being built, read by the tasks */
+    private BallStore current;
+    private int count;
+    private int activeShares;
+    private int phase;
+    private int shift;
+    private double minX;
+    private double minY;
+    private double scale;
+    private double rootWidth;
+
+    /** Per-share minimum and maximum coordinates, and per-share digit counts of a sort pass */
+    private final double[] bounds;
+    private final int[] histograms;
+
+    /** Morton keys and ball indices in sorted order, and the positions and masses in the same order */
+    private int[] keys = new int[0];
+    private int[] order = new int[0];
+    /** Position of each ball in the sorted order */
+    private int[] rank = new int[0];
+    private int[] sortedKeys = new int[0];
+    private int[] sortedOrder = new int[0];
+    private double[] bodyX = new double[0];
+    private double[] bodyY = new double[0];
+    private double[] bodyMass = new double[0];
+
+    /** The nodes; the children of a node are four consecutive nodes starting at firstChild, or -1 for a leaf */
+    private final AtomicInteger nodeCount = new AtomicInteger();
+    private boolean overflowed;
+    private double[] nodeX = new double[0];
+    private double[] nodeY = new double[0];
+    private double[] nodeMass = new double[0];
+    private double[] nodeWidth = new double[0];
+    private int[] firstChild = new int[0];
+    private int[] nodeStart = new int[0];
+    private int[] nodeEnd = new int[0];
+
+    /**
+     * Create a field that builds large trees on the common fork-join pool.
+     *
+     * @param gravitationalConstant the acceleration towards a ball of one kilogram at a distance of one meter, in m^3/(kg s^2)
+     * @param openingAngle the largest width / distance of a node taken as a single body, 0 for the exact sum
+     * @param softening the distance below which the attraction stops growing, in meters
+     */
+    public MutualGravityField(double gravitationalConstant, double openingAngle, double softening) {
+        this(gravitationalConstant, openingAngle, softening, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a field that builds large trees on the given pool.
+     */
+    public MutualGravityField(double gravitationalConstant, double openingAngle, double softening, ForkJoinPool pool) {
+        if (openingAngle < 0) {
+            throw new IllegalArgumentException("Opening angle must not be negative");
+        }
+        this.gravitationalConstant = gravitationalConstant;
+        this.openingAngleSquared = openingAngle * openingAngle;
+        this.softeningSquared = softening * softening;
+        this.pool = pool;
+        shares = new ShareTask[pool.getParallelism()];
+        for (int s = 0; s < shares.length; s++) {
+            shares[s] = new ShareTask(s);
+        }
+        bounds = new double[shares.length * 4];
+        histograms = new int[shares.length * RADIX];
+        sharesRoot = new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(shares);
+            }
+        };
+        for (int t = 0; t < subtrees.length; t++) {
+            subtrees[t] = new SubtreeTask();
+        }
+        subtreesRoot = new RecursiveAction() {
+            @Override
+            protected void compute() {
+                for (int t = 1; t < subtreeCount; t++) {
+                    subtrees[t].fork();
+                }
+                subtrees[0].invoke();
+                for (int t = subtreeCount - 1; t > 0; t--) {
+                    subtrees[t].join();
+                }
+            }
+        };
+        ensureNodeCapacity(64);
+    }
+
+    /**
+     * Build the tree over the current positions of the balls.
+     */
+    @Override
+    public void prepare(BallStore balls) {
+        int n = balls.size();
+        if (n == 0) {
+            nodeMass[0] = 0;
+            firstChild[0] = -1;
+            return;
+        }
+        ensureBodyCapacity(n);
+        ensureNodeCapacity(n);
+        current = balls;
+        count = n;
+        activeShares = n < BALLS_PER_TASK ? 1 : shares.length;
+
+        runShares(BOUNDS);
+        minX = minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int s = 0; s < activeShares; s++) {
+            minX = Math.min(minX, bounds[s * 4]);
+            minY = Math.min(minY, bounds[s * 4 + 1]);
+            maxX = Math.max(maxX, bounds[s * 4 + 2]);
+            maxY = Math.max(maxY, bounds[s * 4 + 3]);
+        }
+        rootWidth = Math.max(maxX - minX, maxY - minY);
+        if (!(rootWidth > 0)) {
+            rootWidth = 1; // all balls at one point
+        }
+        scale = (1 << MAX_DEPTH) / rootWidth;
+        runShares(KEYS);
+
+        // Stable radix sort of the keys, least significant digit first
+        for (shift = 0; shift < 2 * MAX_DEPTH; shift += RADIX_BITS) {
+            runShares(HISTOGRAM);
+            int offset = 0;
+            for (int digit = 0; digit < RADIX; digit++) {
+                for (int s = 0; s < activeShares; s++) {
+                    int digitCount = histograms[s * RADIX + digit];
+                    histograms[s * RADIX + digit] = offset;
+                    offset += digitCount;
+                }
+            }
+            runShares(SCATTER);
+            int[] swap = keys;
+            keys = sortedKeys;
+            sortedKeys = swap;
+            swap = order;
+            order = sortedOrder;
+            sortedOrder = swap;
+        }
+        runShares(GATHER);
+        current = null;
+
+        do {
+            if (overflowed) {
+                ensureNodeCapacity(2 * nodeMass.length);
+                overflowed = false;
+            }
+            nodeCount.set(1);
+            if (activeShares == 1) {
+                build(0, 0, n, 0, false);
+            } else {
+                subtreeCount = 0;
+                build(0, 0, n, 0, true);
+                if (subtreeCount > 0) {
+                    subtreesRoot.reinitialize();
+                    for (int t = 0; t < subtreeCount; t++) {
+                        subtrees[t].reinitialize();
+                    }
+                    pool.invoke(subtreesRoot);
+                }
+                finishTop(0, 0);
+            }
+        } while (overflowed);
+    }
+
+    @Override
+    public void accumulate(BallStore balls, int from, int to, double[] ax, double[] ay) {
+        int[] stack = STACKS.get();
+        double[] x = balls.x;
+        double[] y = balls.y;
+        boolean[] asleep = balls.asleep;
+        for (int i = from; i < to; i++) {
+            if (asleep[i]) {
+                continue; // the pipeline leaves sleeping balls alone
+            }
+            double px = x[i];
+            double py = y[i];
+            int own = rank[i];
+            double sumX = 0;
+            double sumY = 0;
+            int top = 0;
+            stack[top++] = 0;
+            while (top > 0) {
+                int node = stack[--top];
+                double mass = nodeMass[node];
+                if (mass == 0) {
+                    continue;
+                }
+                double dx = nodeX[node] - px;
+                double dy = nodeY[node] - py;
+                double distanceSquared = dx * dx + dy * dy;
+                double width = nodeWidth[node];
+                boolean containsBall = nodeStart[node] <= own && own < nodeEnd[node];
+                if (!containsBall && width * width < openingAngleSquared * distanceSquared) {
+                    // Far enough to take the whole node as one body
+                    double softened = distanceSquared + softeningSquared;
+                    double factor = mass / (softened * Math.sqrt(softened));
+                    sumX += factor * dx;
+                    sumY += factor * dy;
+                } else if (firstChild[node] < 0) {
+                    for (int k = nodeStart[node]; k < nodeEnd[node]; k++) {
+                        if (k == own) {
+                            continue;
+                        }
+                        double bx = bodyX[k] - px;
+                        double by = bodyY[k] - py;
+                        double softened = bx * bx + by * by + softeningSquared;
+                        double factor = bodyMass[k] / (softened * Math.sqrt(softened));
+                        sumX += factor * bx;
+                        sumY += factor * by;
+                    }
+                } else {
+                    int first = firstChild[node];
+                    stack[top++] = first;
+                    stack[top++] = first + 1;
+                    stack[top++] = first + 2;
+                    stack[top++] = first + 3;
+                }
+            }
+            ax[i - from] += gravitationalConstant * sumX;
+            ay[i - from] += gravitationalConstant * sumY;
+        }
+    }
+
+    /**
+     * @return the number of nodes of the last tree built
+     */
+    int getNodeCount() {
+        return nodeCount.get();
+    }
+
+    /**
+     * Build the node over the sorted balls from start (inclusive) to end (exclusive), and its subtree.
+     * When deferred, subtrees at {@link #TASK_DEPTH} are queued as tasks instead, and the nodes
+     * above them are summed up by {@link #finishTop(int, int)} once the tasks are done.
+     */
+    private void build(int node, int start, int end, int depth, boolean deferred) {
+        nodeStart[node] = start;
+        nodeEnd[node] = end;
+        nodeWidth[node] = Math.scalb(rootWidth, -depth);
+        boolean leaf = end - start <= LEAF_SIZE || depth == MAX_DEPTH;
+        if (!leaf && deferred && depth == TASK_DEPTH) {
+            subtrees[subtreeCount++].node = node;
+            return;
+        }
+        if (leaf || !split(node, start, end, depth)) {
+            firstChild[node] = -1;
+            summarizeLeaf(node);
+            return;
+        }
+        int first = firstChild[node];
+        for (int c = first; c < first + 4; c++) {
+            build(c, nodeStart[c], nodeEnd[c], depth + 1, deferred);
+        }
+        if (!deferred) {
+            summarize(node);
+        }
+    }
+
+    /**
+     * Sum up the nodes above the subtrees built as tasks.
+     */
+    private void finishTop(int node, int depth) {
+        int first = firstChild[node];
+        if (first < 0 || depth == TASK_DEPTH) {
+            return;
+        }
+        for (int c = first; c < first + 4; c++) {
+            finishTop(c, depth + 1);
+        }
+        summarize(node);
+    }
+
+    /**
+     * Give a node four children, each covering the balls in one quadrant of the node.
+     *
+     * @return false if the node arrays are full, in which case the node stays a leaf
+     */
+    private boolean split(int node, int start, int end, int depth) {
+        int first = nodeCount.getAndAdd(4);
+        if (first + 4 > nodeMass.length) {
+            overflowed = true;
+            return false;
+        }
+        int quadrantShift = 2 * (MAX_DEPTH - 1 - depth);
+        int from = start;
+        for (int quadrant = 0; quadrant < 4; quadrant++) {
+            int to = quadrant == 3 ? end : lowerBound(from, end, quadrantShift, quadrant + 1);
+            nodeStart[first + quadrant] = from;
+            nodeEnd[first + quadrant] = to;
+            from = to;
+        }
+        firstChild[node] = first;
+        return true;
+    }
+
+    /**
+     * @return the first index in [from, to) whose key has a quadrant of at least quadrant at the given shift
+     */
+    private int lowerBound(int from, int to, int quadrantShift, int quadrant) {
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (((keys[mid] >>> quadrantShift) & 3) < quadrant) {
+                from = mid + 1;
+            } else {
+                to = mid;
+            }
+        }
+        return from;
+    }
+
+    private void summarizeLeaf(int node) {
+        double mass = 0;
+        double momentX = 0;
+        double momentY = 0;
+        for (int k = nodeStart[node]; k < nodeEnd[node]; k++) {
+            mass += bodyMass[k];
+            momentX += bodyMass[k] * bodyX[k];
+            momentY += bodyMass[k] * bodyY[k];
+        }
+        setMoments(node, mass, momentX, momentY);
+    }
+
+    private void summarize(int node) {
+        double mass = 0;
+        double momentX = 0;
+        double momentY = 0;
+        int first = firstChild[node];
+        for (int c = first; c < first + 4; c++) {
+            mass += nodeMass[c];
+            momentX += nodeMass[c] * nodeX[c];
+            momentY += nodeMass[c] * nodeY[c];
+        }
+        setMoments(node, mass, momentX, momentY);
+    }
+
+    private void setMoments(int node, double mass, double momentX, double momentY) {
+        nodeMass[node] = mass;
+        nodeX[node] = mass > 0 ? momentX / mass : 0;
+        nodeY[node] = mass > 0 ? momentY / mass : 0;
+    }
+
+    /**
+     * Run one phase of the sort over all shares of the balls.
+     */
+    private void runShares(int phase) {
+        this.phase = phase;
+        if (activeShares == 1) {
+            runShare(0);
+            return;
+        }
+        sharesRoot.reinitialize();
+        for (ShareTask share : shares) {
+            share.reinitialize();
+        }
+        pool.invoke(sharesRoot);
+    }
+
+    private void runShare(int share) {
+        int from = (int) ((long) count * share / activeShares);
+        int to = (int) ((long) count * (share + 1) / activeShares);
+        switch (phase) {
+            case BOUNDS: {
+                double[] x = current.x;
+                double[] y = current.y;
+                double lowX = Double.POSITIVE_INFINITY;
+                double lowY = Double.POSITIVE_INFINITY;
+                double highX = Double.NEGATIVE_INFINITY;
+                double highY = Double.NEGATIVE_INFINITY;
+                for (int i = from; i < to; i++) {
+                    lowX = Math.min(lowX, x[i]);
+                    lowY = Math.min(lowY, y[i]);
+                    highX = Math.max(highX, x[i]);
+                    highY = Math.max(highY, y[i]);
+                }
+                bounds[share * 4] = lowX;
+                bounds[share * 4 + 1] = lowY;
+                bounds[share * 4 + 2] = highX;
+                bounds[share * 4 + 3] = highY;
+                break;
+            }
+            case KEYS: {
+                int cells = 1 << MAX_DEPTH;
+                for (int i = from; i < to; i++) {
+                    int cellX = Math.min(cells - 1, (int) ((current.x[i] - minX) * scale));
+                    int cellY = Math.min(cells - 1, (int) ((current.y[i] - minY) * scale));
+                    keys[i] = spread(cellX) | (spread(cellY) << 1);
+                    order[i] = i;
+                }
+                break;
+            }
+            case HISTOGRAM: {
+                int base = share * RADIX;
+                for (int digit = 0; digit < RADIX; digit++) {
+                    histograms[base + digit] = 0;
+                }
+                for (int i = from; i < to; i++) {
+                    histograms[base + ((keys[i] >>> shift) & (RADIX - 1))]++;
+                }
+                break;
+            }
+            case SCATTER: {
+                int base = share * RADIX;
+                for (int i = from; i < to; i++) {
+                    int position = histograms[base + ((keys[i] >>> shift) & (RADIX - 1))]++;
+                    sortedKeys[position] = keys[i];
+                    sortedOrder[position] = order[i];
+                }
+                break;
+            }
+            case GATHER: {
+                for (int k = from; k < to; k++) {
+                    int i = order[k];
+                    rank[i] = k;
+                    bodyX[k] = current.x[i];
+                    bodyY[k] = current.y[i];
+                    bodyMass[k] = current.mass[i];
+                }
+                break;
+            }
+            default:
+                throw new IllegalStateException("Unknown phase: " + phase);
+        }
+    }
+
+    /**
+     * Spread the 16 low bits of a cell coordinate over the even bits, for interleaving into a Morton key.
+     */
+    private static int spread(int bits) {
+        bits &= 0xFFFF;
+        bits = (bits | (bits << 8)) & 0x00FF00FF;
+        bits = (bits | (bits << 4)) & 0x0F0F0F0F;
+        bits = (bits | (bits << 2)) & 0x33333333;
+        bits = (bits | (bits << 1)) & 0x55555555;
+        return bits;
+    }
+
+    private void ensureBodyCapacity(int n) {
+        if (keys.length >= n) {
+            return;
+        }
+        keys = new int[n];
+        order = new int[n];
+        rank = new int[n];
+        sortedKeys = new int[n];
+        sortedOrder = new int[n];
+        bodyX = new double[n];
+        bodyY = new double[n];
+        bodyMass = new double[n];
+    }
+
+    private void ensureNodeCapacity(int nodes) {
+        if (nodeMass.length >= nodes) {
+            return;
+        }
+        nodeX = new double[nodes];
+        nodeY = new double[nodes];
+        nodeMass = new double[nodes];
+        nodeWidth = new double[nodes];
+        firstChild = new int[nodes];
+        nodeStart = new int[nodes];
+        nodeEnd = new int[nodes];
+    }
+
+    /**
+     * Runs one phase of the sort over a fixed share of the balls.
+     */
+    @SuppressWarnings("serial")
+    private class ShareTask extends RecursiveAction {
+        private final int share;
+
+        ShareTask(int share) {
+            this.share = share;
+        }
+
+        @Override
+        protected void compute() {
+            runShare(share);
+        }
+    }
+
+    /**
+     * Builds the subtree below one node at {@link #TASK_DEPTH}.
+     */
+    @SuppressWarnings("serial")
+    private class SubtreeTask extends RecursiveAction {
+        int node;
+
+        @Override
+        protected void compute() {
+            build(node, nodeStart[node], nodeEnd[node], TASK_DEPTH, false);
+        }
+    }
+}
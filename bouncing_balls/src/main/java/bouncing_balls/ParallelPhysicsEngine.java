@@ -0,0 +1,240 @@
+package bouncing_balls;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A physics engine that updates a {@link BallStore} on several threads.
+ *
+ * Gravity, integration and wall collisions are independent per ball and run as
+ * fork-join tasks over ranges of indices. For collisions between balls, the balls are
+ * binned into a uniform grid whose cells are at least one diameter wide, so a ball can
+ * only touch balls in the 3x3 block of cells around it. The cells are coloured by their
+ * coordinates modulo 3, giving 9 colours. Two cells of the same colour never share a
+ * neighbour, so all cells of one colour can be processed in parallel without two threads
+ * touching the same ball. The colours are processed one after the other.
+ *
+ * The pairs of each cell are always handled in the same order and cells of one colour do
+ * not affect each other, so the result does not depend on the number of threads. It can
+ * differ slightly from {@link PhysicsEngine}, which handles the pairs in another order.
+ *
+ * The collision strategy is shared by all threads and must not keep state between calls.
+ * Updates of {@link PhysicalObject} arrays are not parallelised.
+ *
+ * With {@link EngineMetrics} set, gravity is timed together with integration since both
+ * run in the same tasks, and allocated bytes only count the calling thread.
+ *
+ * An engine created with a number of threads owns its pool, and shuts it down on
+ * {@link #close()}. A pool passed in stays with the caller.
+ */
+public class ParallelPhysicsEngine extends PhysicsEngine {
+
+    /** Number of balls below which a range of balls is updated on one thread */
+    private static final int BALLS_PER_TASK = 4096;
+
+    /** Number of grid cells below which a range of cells is processed on one thread */
+    private static final int CELLS_PER_TASK = 256;
+
+    private final ForkJoinPool pool;
+    private final boolean ownsPool;
+
+    /** Grid used to partition the balls for the collision phase */
+    private final UniformGridBroadPhase grid = new UniformGridBroadPhase();
+
+    /** Non-empty cells of the colour being processed */
+    private int[] colourCells = new int[0];
+
+    /** Counts summed over all tasks of a measured update */
+    private final LongAdder wallHits = new LongAdder();
+    private final LongAdder candidatePairs = new LongAdder();
+    private final LongAdder contacts = new LongAdder();
+
+    /**
+     * Create an engine running on the common fork-join pool.
+     */
+    public ParallelPhysicsEngine(double areaWidth, double areaHeight) {
+        this(areaWidth, areaHeight, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create an engine running on the given pool.
+     */
+    public ParallelPhysicsEngine(double areaWidth, double areaHeight, ForkJoinPool pool) {
+        this(areaWidth, areaHeight, pool, false);
+    }
+
+    /**
+     * Create an engine running on a pool of its own with the given number of threads,
+     * until {@link #close()}.
+     */
+    public ParallelPhysicsEngine(double areaWidth, double areaHeight, int threads) {
+        this(areaWidth, areaHeight, new ForkJoinPool(threads), true);
+    }
+
+    private ParallelPhysicsEngine(double areaWidth, double areaHeight, ForkJoinPool pool, boolean ownsPool) {
+        super(areaWidth, areaHeight);
+        this.pool = pool;
+        this.ownsPool = ownsPool;
+    }
+
+    /**
+     * @return the pool the engine runs on
+     */
+    ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Shut down the pool of the engine if it created it.
+     */
+    @Override
+    public void close() {
+        if (ownsPool) {
+            pool.shutdown();
+        }
+    }
+
+    @Override
+    public void update(BallStore balls, double deltaT) {
+        EngineMetrics metrics = getMetrics();
+        long bytes = metrics != null ? EngineMetrics.allocatedBytes() : 0;
+        long start = metrics != null ? System.nanoTime() : 0;
+        int n = balls.size();
+
+        // Apply gravity, update positions and handle wall collisions
+        if (!reusesForces(balls)) {
+            getForces().prepare(balls);
+        }
+        forEachRange(n, BALLS_PER_TASK, (from, to) -> {
+            int walls = integrate(balls, from, to, deltaT);
+            if (metrics != null) {
+                wallHits.add(walls);
+            }
+        });
+        if (hasClosingKick()) {
+            startClosingKick(balls);
+            forEachRange(n, BALLS_PER_TASK, (from, to) -> closingKick(balls, from, to, deltaT));
+        }
+        long integrateDone = metrics != null ? System.nanoTime() : 0;
+
+        // Collision between balls, one colour at a time
+        if (n >= 2) {
+            handleBallCollisions(balls, metrics != null);
+        }
+        getForces().keepRecorded(balls);
+
+        if (metrics != null) {
+            long end = System.nanoTime();
+            metrics.recordPhase(EngineMetrics.Phase.INTEGRATE, integrateDone - start);
+            metrics.recordPhase(EngineMetrics.Phase.COLLIDE, end - integrateDone);
+            metrics.recordPhase(EngineMetrics.Phase.STEP, end - start);
+            metrics.recordStep(candidatePairs.sumThenReset(), contacts.sumThenReset(), wallHits.sumThenReset(),
+                    EngineMetrics.allocatedBytes() - bytes);
+        }
+    }
+
+    /**
+     * Handle the collisions between balls, one colour of grid cells at a time.
+     */
+    private void handleBallCollisions(BallStore balls, boolean measured) {
+        int n = balls.size();
+        grid.buildGrid(balls.x, balls.y, balls.radius, n);
+        int cells = grid.columns * grid.rows;
+        if (colourCells.length < cells) {
+            colourCells = new int[cells];
+        }
+        PhysicalObjectCollisionStrategy strategy = getCollisionStrategy();
+        for (int colourY = 0; colourY < 3; colourY++) {
+            for (int colourX = 0; colourX < 3; colourX++) {
+                int count = collectCells(colourX, colourY);
+                forEachRange(count, CELLS_PER_TASK, (from, to) -> {
+                    BallStore.View first = balls.get(0);
+                    BallStore.View second = balls.get(0);
+                    long[] counts = new long[2];
+                    for (int k = from; k < to; k++) {
+                        grid.findPairsInCell(colourCells[k], (i, j) -> {
+                            if (measured) {
+                                counts[0]++;
+                                if (touching(balls, i, j)) {
+                                    counts[1]++;
+                                }
+                            }
+                            first.index = i;
+                            second.index = j;
+                            strategy.handleCollision(first, second);
+                        });
+                    }
+                    if (measured) {
+                        candidatePairs.add(counts[0]);
+                        contacts.add(counts[1]);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Collect the non-empty cells of one colour into colourCells.
+     *
+     * @return the number of cells collected
+     */
+    private int collectCells(int colourX, int colourY) {
+        int count = 0;
+        for (int cy = colourY; cy < grid.rows; cy += 3) {
+            for (int cx = colourX; cx < grid.columns; cx += 3) {
+                int cell = cy * grid.columns + cx;
+                if (grid.cellStart[cell + 1] > grid.cellStart[cell]) {
+                    colourCells[count++] = cell;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Run body over the range [0, count), split into tasks of at most grain elements.
+     */
+    private void forEachRange(int count, int grain, RangeBody body) {
+        if (count <= grain) {
+            body.run(0, count);
+        } else {
+            pool.invoke(new RangeTask(body, 0, count, grain));
+        }
+    }
+
+    /**
+     * Work on a range of indices, from (inclusive) to to (exclusive).
+     */
+    interface RangeBody {
+        void run(int from, int to);
+    }
+
+    /**
+     * Splits a range in halves until it is small enough to run directly.
+     */
+    @SuppressWarnings("serial")
+    static class RangeTask extends RecursiveAction {
+        private final RangeBody body;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        RangeTask(RangeBody body, int from, int to, int grain) {
+            this.body = body;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                body.run(from, to);
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new RangeTask(body, from, mid, grain), new RangeTask(body, mid, to, grain));
+            }
+        }
+    }
+}
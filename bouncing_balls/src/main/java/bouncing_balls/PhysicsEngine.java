@@ -0,0 +1,560 @@
+package bouncing_balls;
+
+/**
+ * The physics engine that updates positions and velocities of physical objects.
+ * It applies gravity and other force fields, handles wall collisions, and handles collisions between objects using a specified strategy.
+ * Candidate pairs for collision are found by a {@link BroadPhase}. When updating a
+ * {@link BallStore} with a strategy that is also a {@link BatchCollisionStrategy}, the
+ * touching pairs are collected into a {@link ContactList} and resolved in one call.
+ * Updates of a {@link BallStore} can be measured by setting {@link EngineMetrics}.
+ * How velocities and positions are advanced is chosen with an {@link Integrator}.
+ */
+public class PhysicsEngine {
+
+    /** Gravitational acceleration, unless changed with {@link ForcePipeline#setGravity(double)} */
+    static final double GRAVITY = -9.82;
+
+    /** Whether the JVM was started with the Vector API, using --add-modules jdk.incubator.vector */
+    static final boolean VECTOR_API_AVAILABLE = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private final double areaWidth;
+    private final double areaHeight;
+    private PhysicalObjectCollisionStrategy strategy;
+    /** The strategy as a batch strategy, or null if it only handles single pairs */
+    private BatchCollisionStrategy batchStrategy;
+    private final ContactList contacts = new ContactList();
+
+    /** Integrates balls with SIMD instructions, null to use the scalar code */
+    private IntegrationKernel vectorKernel = VECTOR_API_AVAILABLE ? new VectorIntegrationKernel(this) : null;
+    private BroadPhase broadPhase = new UniformGridBroadPhase();
+    private final ForcePipeline forces = new ForcePipeline();
+    private Integrator integrator = new SemiImplicitEulerIntegrator();
+
+    /** Puts resting balls of a {@link BallStore} to sleep, null when sleeping is disabled */
+    private SleepSystem sleepSystem;
+
+    /** Records each update of a {@link BallStore}, null when not measuring */
+    private EngineMetrics metrics;
+    /** Pairs counted by the narrow phase during a measured update */
+    private long candidatePairCount;
+    private long contactCount;
+
+    /** Positions and radii gathered for the broad phase, reused between updates */
+    private double[] xs = new double[0];
+    private double[] ys = new double[0];
+    private double[] radii = new double[0];
+
+    /** The objects of the current update, read by the narrow phase */
+    private PhysicalObject[] pairObjects;
+    private final BroadPhase.PairHandler narrowPhase =
+            (i, j) -> strategy.handleCollision(pairObjects[i], pairObjects[j]);
+
+    /** Views moved over the pairs of a {@link BallStore}, so the strategy can handle them without allocation */
+    private BallStore.View first;
+    private BallStore.View second;
+    private final BroadPhase.PairHandler storeNarrowPhase = (i, j) -> {
+        if (metrics != null) {
+            countPair(first.store, i, j);
+        }
+        if (sleepSystem != null && !sleepSystem.handlePair(first.store, i, j)) {
+            return; // both asleep
+        }
+        if (batchStrategy != null) {
+            contacts.addIfTouching(first.store, i, j);
+            return;
+        }
+        first.index = i;
+        second.index = j;
+        strategy.handleCollision(first, second);
+    };
+
+    public PhysicsEngine(double areaWidth, double areaHeight) {
+        this.areaWidth = areaWidth;
+        this.areaHeight = areaHeight;
+    }
+
+    /**
+     * Update positions and velocities of all physical objects over a time step deltaT.
+     * This includes applying gravity, updating positions, handling wall collisions,
+     * and handling collisions between objects.
+     */
+    public void update(PhysicalObject[] physicalObjects, double deltaT) {
+        double firstKick = integrator.firstKick();
+        // Apply gravity
+        for (PhysicalObject p : physicalObjects) {
+            applyGravity(p, deltaT * firstKick);
+        }
+
+        // Update positions and handle wall collisions
+        for (PhysicalObject p : physicalObjects) {
+            updatePosition(p, deltaT);
+            handleWallCollision(p, areaWidth, areaHeight);
+        }
+        if (firstKick < 1) {
+            for (PhysicalObject p : physicalObjects) {
+                applyGravity(p, deltaT * (1 - firstKick));
+            }
+        }
+        // Collision between balls, only for the pairs the broad phase finds
+        handleObjectCollisions(physicalObjects);
+    }
+
+    /**
+     * Update positions and velocities of all balls in a store over a time step deltaT.
+     * Does the same as {@link #update(PhysicalObject[], double)}, but runs directly
+     * over the primitive arrays of the store.
+     */
+    public void update(BallStore balls, double deltaT) {
+        if (metrics != null) {
+            updateMeasured(balls, deltaT);
+            return;
+        }
+        if (!reusesForces(balls)) {
+            forces.prepare(balls);
+        }
+        integrate(balls, 0, balls.size(), deltaT);
+        if (hasClosingKick()) {
+            startClosingKick(balls);
+            closingKick(balls, 0, balls.size(), deltaT);
+        }
+        handleBallCollisions(balls);
+        if (sleepSystem != null) {
+            sleepSystem.finishUpdate(balls, deltaT);
+        }
+        forces.keepRecorded(balls);
+    }
+
+    /**
+     * Do the same as {@link #update(BallStore, double)}, recording each phase in the metrics.
+     */
+    private void updateMeasured(BallStore balls, double deltaT) {
+        long bytes = EngineMetrics.allocatedBytes();
+        long start = System.nanoTime();
+        int n = balls.size();
+        int walls;
+        long gravityDone;
+        if (!reusesForces(balls)) {
+            forces.prepare(balls);
+        }
+        if (vectorKernel != null) {
+            // Forces are part of the vector kernel, and counted as integration
+            gravityDone = start;
+            walls = integrate(balls, 0, n, deltaT);
+        } else {
+            firstKick(balls, 0, n, deltaT * integrator.firstKick());
+            gravityDone = System.nanoTime();
+            walls = updatePositions(balls, 0, n, deltaT);
+        }
+        if (hasClosingKick()) {
+            startClosingKick(balls);
+            closingKick(balls, 0, n, deltaT);
+        }
+        long integrateDone = System.nanoTime();
+        candidatePairCount = 0;
+        contactCount = 0;
+        handleBallCollisions(balls);
+        long collideDone = System.nanoTime();
+        if (sleepSystem != null) {
+            sleepSystem.finishUpdate(balls, deltaT);
+        }
+        forces.keepRecorded(balls);
+        long end = System.nanoTime();
+
+        metrics.recordPhase(EngineMetrics.Phase.GRAVITY, gravityDone - start);
+        metrics.recordPhase(EngineMetrics.Phase.INTEGRATE, integrateDone - gravityDone);
+        metrics.recordPhase(EngineMetrics.Phase.COLLIDE, collideDone - integrateDone);
+        metrics.recordPhase(EngineMetrics.Phase.SLEEP, end - collideDone);
+        metrics.recordPhase(EngineMetrics.Phase.STEP, end - start);
+        metrics.recordStep(candidatePairCount, contactCount, walls, EngineMetrics.allocatedBytes() - bytes);
+    }
+
+    /**
+     * Find candidate pairs among the balls of a store and let the strategy handle them.
+     */
+    private void handleBallCollisions(BallStore balls) {
+        if (first == null || first.store != balls) {
+            first = balls.get(0);
+            second = balls.get(0);
+        }
+        if (sleepSystem != null) {
+            sleepSystem.startUpdate(balls.size());
+        }
+        contacts.clear();
+        double[] radius = sleepSystem != null ? sleepSystem.reachRadii(balls) : balls.radius;
+        broadPhase.findPairs(balls.x, balls.y, radius, balls.size(), storeNarrowPhase);
+        if (batchStrategy != null) {
+            batchStrategy.resolveContacts(balls, contacts);
+        }
+    }
+
+    /**
+     * Count a candidate pair for the metrics, and whether the balls touch.
+     */
+    void countPair(BallStore balls, int i, int j) {
+        candidatePairCount++;
+        if (touching(balls, i, j)) {
+            contactCount++;
+        }
+    }
+
+    /**
+     * @return whether balls i and j of a store overlap
+     */
+    static boolean touching(BallStore balls, int i, int j) {
+        double dx = balls.x[j] - balls.x[i];
+        double dy = balls.y[j] - balls.y[i];
+        double r = balls.radius[i] + balls.radius[j];
+        return dx * dx + dy * dy < r * r;
+    }
+
+    /**
+     * Apply the first kick of the force fields, update positions and handle wall collisions of
+     * the balls of a store with index from (inclusive) to to (exclusive), with SIMD instructions
+     * when enabled. The closing kick, if the integrator has one, is left to
+     * {@link #closingKick(BallStore, int, int, double)}.
+     *
+     * @return the number of times a ball hit a wall
+     */
+    int integrate(BallStore balls, int from, int to, double deltaT) {
+        double firstKick = integrator.firstKick();
+        if (vectorKernel == null) {
+            firstKick(balls, from, to, deltaT * firstKick);
+            return updatePositions(balls, from, to, deltaT);
+        }
+        if (forces.isConstant()) {
+            return vectorKernel.integrate(balls, from, to, deltaT,
+                    forces.getConstantX() * firstKick, forces.getConstantY() * firstKick, areaWidth, areaHeight);
+        }
+        firstKick(balls, from, to, deltaT * firstKick);
+        return vectorKernel.integrate(balls, from, to, deltaT, 0, 0, areaWidth, areaHeight);
+    }
+
+    /**
+     * Apply the first kick of the force fields, with the accelerations recorded by the last
+     * closing kick when there are some.
+     */
+    private void firstKick(BallStore balls, int from, int to, double deltaT) {
+        if (reusesForces(balls)) {
+            forces.applyRecorded(balls, from, to, deltaT);
+        } else {
+            applyForces(balls, from, to, deltaT);
+        }
+    }
+
+    /**
+     * @return whether the first kick reuses the accelerations recorded by the last closing kick,
+     * so the fields need not be prepared
+     */
+    boolean reusesForces(BallStore balls) {
+        return hasClosingKick() && !forces.isConstant() && forces.hasRecorded(balls);
+    }
+
+    /**
+     * @return whether the integrator applies part of the forces after the balls moved
+     */
+    boolean hasClosingKick() {
+        return integrator.firstKick() < 1;
+    }
+
+    /**
+     * Apply the part of the force fields that the integrator leaves until after the balls moved,
+     * to the balls with index from (inclusive) to to (exclusive), after
+     * {@link #startClosingKick(BallStore)}. The accelerations are recorded for the first kick
+     * of the next update.
+     */
+    void closingKick(BallStore balls, int from, int to, double deltaT) {
+        double kick = deltaT * (1 - integrator.firstKick());
+        if (forces.isConstant()) {
+            applyForces(balls, from, to, kick);
+        } else {
+            forces.applyAndRecord(balls, from, to, kick);
+        }
+    }
+
+    /**
+     * Prepare the force fields with the new positions of the balls, before the closing kick.
+     */
+    void startClosingKick(BallStore balls) {
+        if (!forces.isConstant()) {
+            forces.prepare(balls);
+            forces.startRecording(balls);
+        }
+    }
+
+    /**
+     * Apply gravity and the other force fields to the balls of a store with index
+     * from (inclusive) to to (exclusive). When all fields are constant, which includes
+     * gravity alone, their sum is added directly without going through the pipeline.
+     */
+    void applyForces(BallStore balls, int from, int to, double deltaT) {
+        if (!forces.isConstant()) {
+            forces.apply(balls, from, to, deltaT);
+            return;
+        }
+        double[] vx = balls.vx;
+        double[] vy = balls.vy;
+        boolean[] asleep = balls.asleep;
+        double dvx = forces.getConstantX() * deltaT;
+        double dvy = forces.getConstantY() * deltaT;
+        if (dvx != 0) {
+            for (int i = from; i < to; i++) {
+                if (!asleep[i]) {
+                    vx[i] += dvx;
+                }
+            }
+        }
+        for (int i = from; i < to; i++) {
+            if (!asleep[i]) {
+                vy[i] += dvy;
+            }
+        }
+    }
+
+    /**
+     * Update positions of the balls of a store with index from (inclusive) to to (exclusive),
+     * and handle their collisions with the walls.
+     *
+     * @return the number of times a ball hit a wall
+     */
+    int updatePositions(BallStore balls, int from, int to, double deltaT) {
+        double[] x = balls.x;
+        double[] y = balls.y;
+        double[] vx = balls.vx;
+        double[] vy = balls.vy;
+        double[] radius = balls.radius;
+        boolean[] asleep = balls.asleep;
+
+        int wallHits = 0;
+        for (int i = from; i < to; i++) {
+            if (asleep[i]) {
+                continue;
+            }
+            x[i] += vx[i] * deltaT;
+            y[i] += vy[i] * deltaT;
+
+            double r = radius[i];
+            if (x[i] < r || x[i] > areaWidth - r) {
+                x[i] += getOverlap(x[i], r, areaWidth);
+                vx[i] = -vx[i];
+                wallHits++;
+            }
+            if (y[i] < r || y[i] > areaHeight - r) {
+                y[i] += getOverlap(y[i], r, areaHeight);
+                vy[i] = -vy[i];
+                wallHits++;
+            }
+        }
+        return wallHits;
+    }
+
+    /**
+     * Find candidate pairs with the broad phase and let the strategy handle them.
+     */
+    private void handleObjectCollisions(PhysicalObject[] physicalObjects) {
+        int n = physicalObjects.length;
+        if (xs.length < n) {
+            xs = new double[n];
+            ys = new double[n];
+            radii = new double[n];
+        }
+        for (int i = 0; i < n; i++) {
+            PhysicalObject p = physicalObjects[i];
+            xs[i] = p.getX();
+            ys[i] = p.getY();
+            radii[i] = p.getRadius();
+        }
+        pairObjects = physicalObjects;
+        broadPhase.findPairs(xs, ys, radii, n, narrowPhase);
+        pairObjects = null;
+    }
+
+    /**
+     * Apply gravitational force to a ball, updating its vertical velocity.
+     * Constant fields act on the ball too, other force fields only act on balls of a {@link BallStore}.
+     */
+    public void applyGravity(PhysicalObject obj, double deltaT) {
+        double newVY = obj.getVY() + forces.getConstantY() * deltaT; // Update velocity using Euler's method
+        obj.setVY(newVY);
+        if (forces.getConstantX() != 0) {
+            obj.setVX(obj.getVX() + forces.getConstantX() * deltaT);
+        }
+    }
+
+    /**
+     * Update position of a ball based on its velocity and the time step deltaT.
+     */
+    public void updatePosition(PhysicalObject obj, double deltaT) {
+        double newX = obj.getX() + obj.getVX() * deltaT;
+        double newY = obj.getY() + obj.getVY() * deltaT;
+        obj.setX(newX);
+        obj.setY(newY);
+    }
+
+    /**
+     * Handle collision of ball with walls.
+     */
+    public void handleWallCollision(PhysicalObject obj, double areaWidth, double areaHeight) {
+        if (obj.getX() < obj.getRadius() || obj.getX() > areaWidth - obj.getRadius()) {
+            handleXOverlap(obj, areaWidth);
+            obj.setVX(obj.getVX()*-1); // change direction of ball
+        }
+        if (obj.getY() < obj.getRadius() || obj.getY() > areaHeight - obj.getRadius()) {
+            handleYOverlap(obj, areaHeight);
+            obj.setVY(obj.getVY()*-1);
+        }
+    }
+
+    /**
+     * Adjust x position of ball if it overlaps with left or right wall.
+     */
+    private void handleXOverlap(PhysicalObject obj, double areaWidth) {
+        obj.setX(obj.getX() + getOverlap(obj.getX(), obj.getRadius(), areaWidth));
+    }
+
+    /**
+     * Adjust y position of ball if it overlaps with top or bottom wall.
+     */
+    private void handleYOverlap(PhysicalObject obj, double areaHeight) {
+        obj.setY(obj.getY() + getOverlap(obj.getY(), obj.getRadius(), areaHeight));
+    }
+
+    /**
+     * Calculate overlap of ball with wall.
+     * Returns positive value if ball overlaps left or bottom wall,
+     * negative value if ball overlaps right or top wall,
+     * and zero if no overlap.
+     */
+    private double getOverlap(double center, double radius, double borderLength)
+    {
+        if(center < radius) {
+            return radius - center;
+        } else if(center > borderLength - radius) {
+            return -(center + radius - borderLength);
+        }
+        return 0; // no overlap
+    }
+
+    /**
+     * Set the collision strategy to be used for handling collisions between physical objects.
+     */
+    public void setCollisionStrategy(PhysicalObjectCollisionStrategy strategy) {
+        this.strategy = strategy;
+        this.batchStrategy = strategy instanceof BatchCollisionStrategy ? (BatchCollisionStrategy) strategy : null;
+    }
+
+    /**
+     * Let balls of a {@link BallStore} fall asleep when they come to rest. A ball whose speed
+     * stays below speedThreshold for timeToSleep seconds, together with every ball it touches,
+     * is no longer moved until a moving ball touches it. Only the serial update of a store
+     * supports sleeping.
+     *
+     * @param speedThreshold the speed below which a ball counts as resting, or 0 to disable sleeping
+     * @param timeToSleep how long a ball must rest before it falls asleep
+     */
+    public void setSleeping(double speedThreshold, double timeToSleep) {
+        sleepSystem = speedThreshold > 0 ? new SleepSystem(speedThreshold, timeToSleep) : null;
+    }
+
+    /**
+     * @return the force fields acting on the balls, gravity alone by default
+     */
+    public ForcePipeline getForces() {
+        return forces;
+    }
+
+    /**
+     * Set how velocities and positions are advanced, {@link SemiImplicitEulerIntegrator} by default.
+     * The event-driven engine moves balls along their exact parabolas and ignores it.
+     */
+    public void setIntegrator(Integrator integrator) {
+        this.integrator = integrator;
+        forces.forgetRecorded();
+    }
+
+    public Integrator getIntegrator() {
+        return integrator;
+    }
+
+    /**
+     * Choose whether balls of a {@link BallStore} are integrated with SIMD instructions
+     * through the Vector API. This is the default when the JVM is started with
+     * --add-modules jdk.incubator.vector, and cannot be enabled otherwise.
+     */
+    public void setVectorized(boolean vectorized) {
+        if (vectorized && !VECTOR_API_AVAILABLE) {
+            throw new IllegalArgumentException("Start the JVM with --add-modules jdk.incubator.vector to use the Vector API");
+        }
+        vectorKernel = vectorized ? new VectorIntegrationKernel(this) : null;
+    }
+
+    /**
+     * @return whether balls of a {@link BallStore} are integrated with SIMD instructions
+     */
+    public boolean isVectorized() {
+        return vectorKernel != null;
+    }
+
+    /**
+     * Record every update of a {@link BallStore} in the given metrics, or stop recording if null.
+     */
+    public void setMetrics(EngineMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return the metrics updates are recorded in, or null
+     */
+    EngineMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return whether updates must be split into sub-steps to keep fast objects
+     * from passing through each other
+     */
+    boolean needsSubSteps() {
+        return true;
+    }
+
+    /**
+     * @return the broad phase used to find candidate pairs for collision
+     */
+    BroadPhase getBroadPhase() {
+        return broadPhase;
+    }
+
+    /**
+     * @return the width of the area the objects move in
+     */
+    double getAreaWidth() {
+        return areaWidth;
+    }
+
+    /**
+     * @return the height of the area the objects move in
+     */
+    double getAreaHeight() {
+        return areaHeight;
+    }
+
+    /**
+     * @return the collision strategy used for handling collisions between physical objects
+     */
+    PhysicalObjectCollisionStrategy getCollisionStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Set the broad phase used to find candidate pairs for collision.
+     * Use {@link BruteForceBroadPhase} to test every pair.
+     */
+    public void setBroadPhase(BroadPhase broadPhase) {
+        this.broadPhase = broadPhase;
+    }
+
+    /**
+     * Release the threads the engine started, if any. The engine must not be updated afterwards.
+     */
+    public void close() {
+    }
+}
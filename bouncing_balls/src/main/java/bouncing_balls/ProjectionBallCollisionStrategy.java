@@ -0,0 +1,115 @@
+package bouncing_balls;
+/**
+ * Implements collision detection and response for collisions between balls,
+ * working directly with vectors instead of polar coordinates.
+ *
+ * Gives the same elastic collision as {@link BallCollisionStrategy}: the velocities are
+ * projected onto the contact normal, the normal components are exchanged as in a 1D
+ * collision, and the tangential components are left unchanged. Overlap is detected on
+ * squared distances, and no trigonometry or temporary arrays are needed.
+ *
+ * As a {@link BatchCollisionStrategy} it resolves a whole contact list straight on the
+ * arrays of a {@link BallStore}.
+ *
+ * @see BallCollisionStrategy
+ */
+public class ProjectionBallCollisionStrategy implements PhysicalObjectCollisionStrategy, BatchCollisionStrategy {
+
+    /**
+     * Handle collision between two ball objects.
+     *
+     * @param obj1 the first physical object involved in collision
+     * @param obj2 the second physical object involved in collision
+     */
+    @Override
+    public void handleCollision(PhysicalObject obj1, PhysicalObject obj2) {
+        double dx = obj2.getX() - obj1.getX();
+        double dy = obj2.getY() - obj1.getY();
+        double distanceSquared = dx * dx + dy * dy;
+        double radii = obj1.getRadius() + obj2.getRadius();
+        if (distanceSquared >= radii * radii) {
+            return;
+        }
+
+        // Contact normal, pointing from obj1 to obj2
+        double distance = Math.sqrt(distanceSquared);
+        double nx = 1;
+        double ny = 0;
+        if (distance > 0) {
+            nx = dx / distance;
+            ny = dy / distance;
+        }
+
+        // Velocity components along the normal
+        double v1n = obj1.getVX() * nx + obj1.getVY() * ny;
+        double v2n = obj2.getVX() * nx + obj2.getVY() * ny;
+
+        // Handle collision in 1D, conserving momentum and energy
+        double m1 = obj1.getMass();
+        double m2 = obj2.getMass();
+        double totalMass = m1 + m2;
+        double newV1n = ((m1 - m2) * v1n + 2 * m2 * v2n) / totalMass;
+        double newV2n = ((m2 - m1) * v2n + 2 * m1 * v1n) / totalMass;
+
+        // Only the normal components change
+        obj1.setVX(obj1.getVX() + (newV1n - v1n) * nx);
+        obj1.setVY(obj1.getVY() + (newV1n - v1n) * ny);
+        obj2.setVX(obj2.getVX() + (newV2n - v2n) * nx);
+        obj2.setVY(obj2.getVY() + (newV2n - v2n) * ny);
+
+        // Ensure balls are not overlapping after collision
+        double separation = (radii - distance) / 2;
+        obj1.setX(obj1.getX() - separation * nx);
+        obj1.setY(obj1.getY() - separation * ny);
+        obj2.setX(obj2.getX() + separation * nx);
+        obj2.setY(obj2.getY() + separation * ny);
+    }
+
+    @Override
+    public void resolveContacts(BallStore balls, ContactList contacts) {
+        resolveElastic(balls, contacts);
+    }
+
+    /**
+     * Resolve every contact of a list as an elastic collision, in the order they were added.
+     * Each contact sees the velocities left by the contacts before it.
+     */
+    static void resolveElastic(BallStore balls, ContactList contacts) {
+        double[] x = balls.x;
+        double[] y = balls.y;
+        double[] vx = balls.vx;
+        double[] vy = balls.vy;
+        double[] mass = balls.mass;
+        int[] first = contacts.first;
+        int[] second = contacts.second;
+        double[] normalX = contacts.normalX;
+        double[] normalY = contacts.normalY;
+        double[] depth = contacts.depth;
+
+        for (int k = 0, n = contacts.size(); k < n; k++) {
+            int i = first[k];
+            int j = second[k];
+            double nx = normalX[k];
+            double ny = normalY[k];
+
+            // Handle collision in 1D along the normal, conserving momentum and energy
+            double v1n = vx[i] * nx + vy[i] * ny;
+            double v2n = vx[j] * nx + vy[j] * ny;
+            double m1 = mass[i];
+            double m2 = mass[j];
+            double totalMass = m1 + m2;
+            double newV1n = ((m1 - m2) * v1n + 2 * m2 * v2n) / totalMass;
+            double newV2n = ((m2 - m1) * v2n + 2 * m1 * v1n) / totalMass;
+            vx[i] += (newV1n - v1n) * nx;
+            vy[i] += (newV1n - v1n) * ny;
+            vx[j] += (newV2n - v2n) * nx;
+            vy[j] += (newV2n - v2n) * ny;
+
+            double separation = depth[k] / 2;
+            x[i] -= separation * nx;
+            y[i] -= separation * ny;
+            x[j] += separation * nx;
+            y[j] += separation * ny;
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package bouncing_balls;
+
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Description of a simulation to run: the area, how the balls are placed,
+ * and which engine, broad phase and collision strategy to use.
+ *
+ * Scenarios are read from properties, either from a file or as key=value arguments.
+ * All keys are optional:
+ * <pre>
+ * width, height      size of the area in meters (8 x 6)
+ * balls              number of balls (1000)
+ * minRadius, maxRadius  radius range in meters (0.01, 0.03)
+ * density            mass per square meter, mass = density * pi * r^2 (1000)
+ * speed              maximum initial speed in m/s (2)
+ * distribution       uniform or clustered (uniform)
+ * clusters           number of clusters for the clustered distribution (4)
+ * seed               random seed (1)
+ * engine             serial, parallel or event (serial)
+ * threads            number of threads for the parallel engine (all cores)
+ * broadPhase         grid, sweep or brute (grid)
+ * strategy           projection, polar or impulse, impulse with the serial engine only (projection)
+ * iterations         sweeps per update of the impulse strategy, see {@link SequentialImpulseSolver} (10)
+ * restitution        fraction of the approach speed balls bounce back with, for the impulse strategy (1)
+ * restingSpeed       approach speed in m/s below which balls do not bounce, for the impulse strategy (0)
+ * integrator         euler (semi-implicit) or verlet (euler)
+ * sleepSpeed         speed below which balls count as resting, 0 disables sleeping, serial engine only (0)
+ * sleepTime          seconds a ball must rest before it falls asleep (0.5)
+ * gravity            vertical acceleration in m/s^2, negative for downwards (-9.82)
+ * wind               horizontal acceleration in m/s^2 (0)
+ * drag               linear drag rate in 1/s, see {@link DragField}, not with the event engine (0)
+ * attraction         gravitational constant between the balls in m^3/(kg s^2), 0 disables it,
+ *                    see {@link MutualGravityField}, not with the event engine (0)
+ * openingAngle       opening angle of the Barnes-Hut tree, 0 for the exact sum (0.5)
+ * softening          distance below which the attraction between balls stops growing (0.01)
+ * </pre>
+ */
+class Scenario {
+
+    double width = 8;
+    double height = 6;
+    int balls = 1000;
+    double minRadius = 0.01;
+    double maxRadius = 0.03;
+    double density = 1000;
+    double speed = 2;
+    String distribution = "uniform";
+    int clusters = 4;
+    long seed = 1;
+    String engine = "serial";
+    int threads = Runtime.getRuntime().availableProcessors();
+    String broadPhase = "grid";
+    String strategy = "projection";
+    int iterations = 10;
+    double restitution = 1;
+    double restingSpeed = 0;
+    String integrator = "euler";
+    double sleepSpeed = 0;
+    double sleepTime = 0.5;
+    double gravity = PhysicsEngine.GRAVITY;
+    double wind = 0;
+    double drag = 0;
+    double attraction = 0;
+    double openingAngle = 0.5;
+    double softening = 0.01;
+
+    /**
+     * Read a scenario from properties, keeping the defaults for missing keys.
+     *
+     * @throws IllegalArgumentException if a value cannot be parsed
+     */
+    static Scenario fromProperties(Properties properties) {
+        Scenario scenario = new Scenario();
+        scenario.apply(properties);
+        return scenario;
+    }
+
+    /**
+     * Override the values of this scenario with those in the properties.
+     *
+     * @throws IllegalArgumentException if a value cannot be parsed
+     */
+    void apply(Properties properties) {
+        width = getDouble(properties, "width", width);
+        height = getDouble(properties, "height", height);
+        balls = (int) getDouble(properties, "balls", balls);
+        minRadius = getDouble(properties, "minRadius", minRadius);
+        maxRadius = getDouble(properties, "maxRadius", maxRadius);
+        density = getDouble(properties, "density", density);
+        speed = getDouble(properties, "speed", speed);
+        distribution = properties.getProperty("distribution", distribution);
+        clusters = (int) getDouble(properties, "clusters", clusters);
+        seed = (long) getDouble(properties, "seed", seed);
+        engine = properties.getProperty("engine", engine);
+        threads = (int) getDouble(properties, "threads", threads);
+        broadPhase = properties.getProperty("broadPhase", broadPhase);
+        strategy = properties.getProperty("strategy", strategy);
+        iterations = (int) getDouble(properties, "iterations", iterations);
+        restitution = getDouble(properties, "restitution", restitution);
+        restingSpeed = getDouble(properties, "restingSpeed", restingSpeed);
+        integrator = properties.getProperty("integrator", integrator);
+        sleepSpeed = getDouble(properties, "sleepSpeed", sleepSpeed);
+        sleepTime = getDouble(properties, "sleepTime", sleepTime);
+        gravity = getDouble(properties, "gravity", gravity);
+        wind = getDouble(properties, "wind", wind);
+        drag = getDouble(properties, "drag", drag);
+        attraction = getDouble(properties, "attraction", attraction);
+        openingAngle = getDouble(properties, "openingAngle", openingAngle);
+        softening = getDouble(properties, "softening", softening);
+    }
+
+    private static double getDouble(Properties properties, String key, double defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for " + key + ": " + value, e);
+        }
+    }
+
+    /**
+     * Create a model with the balls and physics engine of this scenario.
+     */
+    Model createModel() {
+        return new Model(width, height, createBalls(), createEngine());
+    }
+
+    /**
+     * Place the balls at random, according to the distribution.
+     */
+    BallStore createBalls() {
+        Random random = new Random(seed);
+        BallStore store = new BallStore(balls);
+
+        double[] centerX = new double[Math.max(clusters, 1)];
+        double[] centerY = new double[centerX.length];
+        for (int c = 0; c < centerX.length; c++) {
+            centerX[c] = random.nextDouble() * width;
+            centerY[c] = random.nextDouble() * height;
+        }
+        double spread = Math.min(width, height) / 10;
+
+        for (int i = 0; i < balls; i++) {
+            double r = minRadius + random.nextDouble() * (maxRadius - minRadius);
+            double x;
+            double y;
+            switch (distribution) {
+                case "uniform":
+                    x = random.nextDouble() * width;
+                    y = random.nextDouble() * height;
+                    break;
+                case "clustered":
+                    int c = random.nextInt(centerX.length);
+                    x = centerX[c] + random.nextGaussian() * spread;
+                    y = centerY[c] + random.nextGaussian() * spread;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown distribution: " + distribution);
+            }
+            // Keep the ball inside the walls
+            x = Math.max(r, Math.min(width - r, x));
+            y = Math.max(r, Math.min(height - r, y));
+
+            double angle = random.nextDouble() * 2 * Math.PI;
+            double v = random.nextDouble() * speed;
+            store.add(x, y, v * Math.cos(angle), v * Math.sin(angle), r, density * Math.PI * r * r);
+        }
+        return store;
+    }
+
+    /**
+     * Create the physics engine, broad phase and collision strategy of this scenario.
+     * The parallel engine runs on threads of its own, which {@link PhysicsEngine#close()} releases.
+     */
+    PhysicsEngine createEngine() {
+        if (sleepSpeed > 0 && !engine.equals("serial")) {
+            throw new IllegalArgumentException("Sleeping is only supported by the serial engine");
+        }
+        if (strategy.equals("impulse") && !engine.equals("serial")) {
+            throw new IllegalArgumentException("The impulse strategy needs the serial engine");
+        }
+        if (engine.equals("event") && (drag > 0 || attraction != 0)) {
+            throw new IllegalArgumentException("The event engine only supports constant fields, not drag or attraction");
+        }
+        PhysicsEngine physicsEngine;
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        switch (engine) {
+            case "serial":
+                physicsEngine = new PhysicsEngine(width, height);
+                break;
+            case "parallel":
+                ParallelPhysicsEngine parallel = new ParallelPhysicsEngine(width, height, threads);
+                pool = parallel.getPool();
+                physicsEngine = parallel;
+                break;
+            case "event":
+                physicsEngine = new EventDrivenPhysicsEngine(width, height);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown engine: " + engine);
+        }
+        try {
+            configure(physicsEngine, pool);
+        } catch (IllegalArgumentException e) {
+            physicsEngine.close();
+            throw e;
+        }
+        return physicsEngine;
+    }
+
+    /**
+     * Set the broad phase, collision strategy, integrator and force fields of an engine,
+     * building large mutual gravity trees on the given pool.
+     */
+    private void configure(PhysicsEngine physicsEngine, ForkJoinPool pool) {
+        switch (broadPhase) {
+            case "grid":
+                physicsEngine.setBroadPhase(new UniformGridBroadPhase());
+                break;
+            case "sweep":
+                physicsEngine.setBroadPhase(new SweepAndPruneBroadPhase());
+                break;
+            case "brute":
+                physicsEngine.setBroadPhase(new BruteForceBroadPhase());
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown broad phase: " + broadPhase);
+        }
+
+        switch (strategy) {
+            case "projection":
+                physicsEngine.setCollisionStrategy(new ProjectionBallCollisionStrategy());
+                break;
+            case "polar":
+                physicsEngine.setCollisionStrategy(new BallCollisionStrategy());
+                break;
+            case "impulse":
+                SequentialImpulseSolver solver = new SequentialImpulseSolver(width, height, iterations);
+                solver.setRestitution(restitution);
+                solver.setRestingSpeed(restingSpeed);
+                physicsEngine.setCollisionStrategy(solver);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown strategy: " + strategy);
+        }
+        switch (integrator) {
+            case "euler":
+                physicsEngine.setIntegrator(new SemiImplicitEulerIntegrator());
+                break;
+            case "verlet":
+                physicsEngine.setIntegrator(new VelocityVerletIntegrator());
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown integrator: " + integrator);
+        }
+        physicsEngine.setSleeping(sleepSpeed, sleepTime);
+
+        ForcePipeline forces = physicsEngine.getForces();
+        forces.setGravity(gravity);
+        if (wind != 0) {
+            forces.add(new ConstantField(wind, 0));
+        }
+        if (drag > 0) {
+            forces.add(new DragField(drag));
+        }
+        if (attraction != 0) {
+            forces.add(new MutualGravityField(attraction, openingAngle, softening, pool));
+        }
+    }
+}
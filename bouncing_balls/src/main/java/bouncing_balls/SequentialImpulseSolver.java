@@ -0,0 +1,298 @@
+package bouncing_balls;
+
+/**
+ * Resolves all contacts of an update together by sequential impulses, so that stacks and
+ * piles of balls settle instead of jittering.
+ *
+ * Resolving each pair once, as {@link ProjectionBallCollisionStrategy} does, lets the last
+ * pair of a stack undo what the first one fixed. This solver sweeps over the whole contact
+ * list a number of times instead. Each contact accumulates a normal impulse, which may
+ * grow or shrink on every sweep but never pulls the balls together, until every contact
+ * reaches its target normal velocity: bouncing back by the restitution when the balls
+ * approach faster than the resting speed, and simply not approaching otherwise. The
+ * overlaps are then removed over the same number of sweeps, moving each ball by its share
+ * of the inverse mass. A sliver of overlap is left, so that resting balls still touch in
+ * the next update and their contact, and its impulse, carry over.
+ *
+ * The walls take part as contacts of infinite mass with every ball touching them. Otherwise
+ * the weight of a pile would push its bottom row into the floor, and the engine would bounce
+ * it back at full speed on the next update.
+ *
+ * The impulses are kept in a {@link ContactCache} keyed by the pair of balls. A contact that
+ * was already there in the previous update starts from its previous impulse, so a resting
+ * stack starts out nearly solved and converges in a few sweeps rather than over many
+ * updates. Warm starting assumes the balls keep their indices in the store.
+ *
+ * Pairs of {@link PhysicalObject}s, and the pairs of the parallel engine, are handled one at
+ * a time as by {@link ProjectionBallCollisionStrategy}.
+ */
+public class SequentialImpulseSolver implements PhysicalObjectCollisionStrategy, BatchCollisionStrategy {
+
+    /** Gap to a wall, as a fraction of the radius, below which a ball touches the wall */
+    private static final double WALL_MARGIN = 0.01;
+
+    /** Overlap left between touching balls, as a fraction of the smaller radius */
+    private static final double SLOP = 0.01;
+
+    /** Stand-in indices of the left, right, bottom and top walls in the contact cache */
+    private static final int LEFT = Integer.MAX_VALUE, RIGHT = LEFT - 1, BOTTOM = LEFT - 2, TOP = LEFT - 3;
+
+    private final PhysicalObjectCollisionStrategy pairwise = new ProjectionBallCollisionStrategy();
+    private final ContactCache cache = new ContactCache();
+    private final double areaWidth;
+    private final double areaHeight;
+
+    private int iterations;
+    private double restitution = 1;
+    private double restingSpeed;
+    private boolean warmStarting = true;
+
+    /** Per-contact state of the current update, reused between updates */
+    private double[] effectiveMass = new double[0];
+    private double[] targetSpeed = new double[0];
+    private double[] impulse = new double[0];
+
+    /** Contacts between a ball and a wall, with the normal pointing away from the wall */
+    private final ContactList walls = new ContactList();
+    private double[] wallTargetSpeed = new double[0];
+    private double[] wallImpulse = new double[0];
+
+    /**
+     * @param areaWidth the width of the area of the engine, whose walls are contacts too
+     * @param areaHeight the height of the area
+     * @param iterations the number of sweeps over the contacts per update
+     */
+    public SequentialImpulseSolver(double areaWidth, double areaHeight, int iterations) {
+        this.areaWidth = areaWidth;
+        this.areaHeight = areaHeight;
+        setIterations(iterations);
+    }
+
+    public void setIterations(int iterations) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("At least one iteration is needed");
+        }
+        this.iterations = iterations;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Set the fraction of the approach speed that balls bounce back with, 1 (elastic) by default.
+     * Elastic balls keep their energy, so a pile dropped from a height only comes to rest
+     * with a restitution below 1.
+     */
+    public void setRestitution(double restitution) {
+        this.restitution = restitution;
+    }
+
+    /**
+     * Set the approach speed below which balls do not bounce, 0 by default so that every
+     * contact bounces. A few times the speed gained from gravity in one step, such as 3 |g| dt,
+     * keeps resting contacts from bouncing on that speed, so that elastic stacks settle too.
+     */
+    public void setRestingSpeed(double restingSpeed) {
+        this.restingSpeed = restingSpeed;
+    }
+
+    /**
+     * Choose whether contacts start from the impulse of the same pair in the previous update.
+     */
+    public void setWarmStarting(boolean warmStarting) {
+        this.warmStarting = warmStarting;
+        cache.clear();
+    }
+
+    @Override
+    public void handleCollision(PhysicalObject obj1, PhysicalObject obj2) {
+        pairwise.handleCollision(obj1, obj2);
+    }
+
+    @Override
+    public void resolveContacts(BallStore balls, ContactList contacts) {
+        int n = contacts.size();
+        if (effectiveMass.length < n) {
+            int capacity = Math.max(n, 2 * effectiveMass.length);
+            effectiveMass = new double[capacity];
+            targetSpeed = new double[capacity];
+            impulse = new double[capacity];
+        }
+        double[] vx = balls.vx;
+        double[] vy = balls.vy;
+        double[] mass = balls.mass;
+        int[] first = contacts.first;
+        int[] second = contacts.second;
+        double[] normalX = contacts.normalX;
+        double[] normalY = contacts.normalY;
+        findWallContacts(balls);
+        int wallCount = walls.size();
+
+        // Targets from the velocities before any impulse, then apply the cached impulses
+        for (int k = 0; k < n; k++) {
+            int i = first[k];
+            int j = second[k];
+            double nx = normalX[k];
+            double ny = normalY[k];
+            effectiveMass[k] = 1 / (1 / mass[i] + 1 / mass[j]);
+            double normalSpeed = (vx[j] - vx[i]) * nx + (vy[j] - vy[i]) * ny;
+            targetSpeed[k] = target(normalSpeed);
+            impulse[k] = warmStarting ? cache.get(i, j) : 0;
+        }
+        for (int k = 0; k < wallCount; k++) {
+            int i = walls.first[k];
+            wallTargetSpeed[k] = target(vx[i] * walls.normalX[k] + vy[i] * walls.normalY[k]);
+            wallImpulse[k] = warmStarting ? cache.get(i, walls.second[k]) : 0;
+        }
+        for (int k = 0; k < n; k++) {
+            applyImpulse(balls, first[k], second[k], normalX[k], normalY[k], impulse[k]);
+        }
+        for (int k = 0; k < wallCount; k++) {
+            applyWallImpulse(balls, walls.first[k], walls.normalX[k], walls.normalY[k], wallImpulse[k]);
+        }
+
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            for (int k = 0; k < n; k++) {
+                int i = first[k];
+                int j = second[k];
+                double nx = normalX[k];
+                double ny = normalY[k];
+                double normalSpeed = (vx[j] - vx[i]) * nx + (vy[j] - vy[i]) * ny;
+                // Clamp the accumulated impulse, not the change, so later sweeps can take back too much
+                double accumulated = Math.max(0, impulse[k] + effectiveMass[k] * (targetSpeed[k] - normalSpeed));
+                applyImpulse(balls, i, j, nx, ny, accumulated - impulse[k]);
+                impulse[k] = accumulated;
+            }
+            for (int k = 0; k < wallCount; k++) {
+                int i = walls.first[k];
+                double nx = walls.normalX[k];
+                double ny = walls.normalY[k];
+                double normalSpeed = vx[i] * nx + vy[i] * ny;
+                double accumulated = Math.max(0, wallImpulse[k] + mass[i] * (wallTargetSpeed[k] - normalSpeed));
+                applyWallImpulse(balls, i, nx, ny, accumulated - wallImpulse[k]);
+                wallImpulse[k] = accumulated;
+            }
+        }
+
+        if (warmStarting) {
+            for (int k = 0; k < n; k++) {
+                cache.put(first[k], second[k], impulse[k]);
+            }
+            for (int k = 0; k < wallCount; k++) {
+                cache.put(walls.first[k], walls.second[k], wallImpulse[k]);
+            }
+            cache.nextUpdate();
+        }
+        separate(balls, contacts);
+    }
+
+    /**
+     * @return the normal speed a contact should end with, given the one it starts with
+     */
+    private double target(double normalSpeed) {
+        return normalSpeed < -restingSpeed ? -restitution * normalSpeed : 0;
+    }
+
+    /**
+     * Collect the balls touching a wall into the wall contacts.
+     */
+    private void findWallContacts(BallStore balls) {
+        walls.clear();
+        double[] x = balls.x;
+        double[] y = balls.y;
+        double[] radius = balls.radius;
+        for (int i = 0, n = balls.size(); i < n; i++) {
+            double r = radius[i];
+            double margin = r * WALL_MARGIN;
+            if (x[i] - r < margin) {
+                walls.add(i, LEFT, 1, 0, r - x[i]);
+            }
+            if (areaWidth - r - x[i] < margin) {
+                walls.add(i, RIGHT, -1, 0, x[i] + r - areaWidth);
+            }
+            if (y[i] - r < margin) {
+                walls.add(i, BOTTOM, 0, 1, r - y[i]);
+            }
+            if (areaHeight - r - y[i] < margin) {
+                walls.add(i, TOP, 0, -1, y[i] + r - areaHeight);
+            }
+        }
+        if (wallImpulse.length < walls.size()) {
+            wallTargetSpeed = new double[walls.first.length];
+            wallImpulse = new double[walls.first.length];
+        }
+    }
+
+    private static void applyWallImpulse(BallStore balls, int i, double nx, double ny, double amount) {
+        double change = amount / balls.mass[i];
+        balls.vx[i] += change * nx;
+        balls.vy[i] += change * ny;
+    }
+
+    /**
+     * Push the balls of contact pair i, j apart by an impulse along the normal from i to j.
+     */
+    private static void applyImpulse(BallStore balls, int i, int j, double nx, double ny, double amount) {
+        if (amount == 0) {
+            return;
+        }
+        double toI = amount / balls.mass[i];
+        double toJ = amount / balls.mass[j];
+        balls.vx[i] -= toI * nx;
+        balls.vy[i] -= toI * ny;
+        balls.vx[j] += toJ * nx;
+        balls.vy[j] += toJ * ny;
+    }
+
+    private void clampToArea(BallStore balls, int i) {
+        double r = balls.radius[i];
+        balls.x[i] = Math.max(r, Math.min(areaWidth - r, balls.x[i]));
+        balls.y[i] = Math.max(r, Math.min(areaHeight - r, balls.y[i]));
+    }
+
+    /**
+     * Remove the overlaps, measured along the normals of the contacts, in as many sweeps as
+     * the velocities, keeping the balls inside the walls.
+     */
+    private void separate(BallStore balls, ContactList contacts) {
+        double[] x = balls.x;
+        double[] y = balls.y;
+        double[] radius = balls.radius;
+        double[] mass = balls.mass;
+        int[] first = contacts.first;
+        int[] second = contacts.second;
+        double[] normalX = contacts.normalX;
+        double[] normalY = contacts.normalY;
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            boolean overlapping = false;
+            for (int k = 0, n = contacts.size(); k < n; k++) {
+                int i = first[k];
+                int j = second[k];
+                double nx = normalX[k];
+                double ny = normalY[k];
+                double slop = SLOP * Math.min(radius[i], radius[j]);
+                double overlap = radius[i] + radius[j] - ((x[j] - x[i]) * nx + (y[j] - y[i]) * ny) - slop;
+                if (overlap <= 0) {
+                    continue;
+                }
+                overlapping = true;
+                double inverseI = 1 / mass[i];
+                double inverseJ = 1 / mass[j];
+                double share = overlap / (inverseI + inverseJ);
+                x[i] -= share * inverseI * nx;
+                y[i] -= share * inverseI * ny;
+                x[j] += share * inverseJ * nx;
+                y[j] += share * inverseJ * ny;
+            }
+            // Walls do not move, so the balls go back inside
+            for (int k = 0, n = contacts.size(); k < n; k++) {
+                clampToArea(balls, first[k]);
+                clampToArea(balls, second[k]);
+            }
+            if (!overlapping) {
+                break;
+            }
+        }
+    }
+}
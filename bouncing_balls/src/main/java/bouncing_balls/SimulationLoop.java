@@ -0,0 +1,148 @@
+package bouncing_balls;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Steps a model on its own thread and publishes the positions of the balls for drawing.
+ *
+ * The positions are copied into one of three snapshots after every step. One snapshot
+ * is being written by the simulation, one is the latest published, and one is being
+ * read by the renderer. Publishing and picking up the latest snapshot are a single
+ * atomic exchange each, so neither side ever waits for the other, and the renderer
+ * never sees a snapshot that is still being written.
+ */
+class SimulationLoop {
+
+    /**
+     * The positions of the balls at the end of a step.
+     */
+    static class Snapshot {
+        double[] x = new double[0];
+        double[] y = new double[0];
+        double[] radius = new double[0];
+        int count;
+        /** Number of steps taken when this snapshot was published */
+        long step;
+
+        void copyFrom(Model model) {
+            BallStore balls = model.balls;
+            count = balls.size();
+            if (x.length < count) {
+                x = new double[balls.x.length];
+                y = new double[balls.x.length];
+                radius = new double[balls.x.length];
+            }
+            for (int i = 0; i < count; i++) {
+                x[i] = model.interpolatedX(i);
+                y[i] = model.interpolatedY(i);
+            }
+            System.arraycopy(balls.radius, 0, radius, 0, count);
+        }
+    }
+
+    /** Set in {@link #state} when the middle snapshot has not been picked up yet */
+    private static final int FRESH = 4;
+
+    private final Model model;
+    private final long stepNanos;
+
+    private final Snapshot[] snapshots = { new Snapshot(), new Snapshot(), new Snapshot() };
+    /** Index of the latest published snapshot, with the FRESH flag */
+    private final AtomicInteger state = new AtomicInteger(1);
+    /** Index of the snapshot being written, only used by the simulation thread */
+    private int back = 0;
+    /** Index of the snapshot being read, only used by the rendering thread */
+    private int front = 2;
+    private long steps;
+
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * @param stepsPerSecond how often to step the model, independent of the frame rate
+     */
+    SimulationLoop(Model model, int stepsPerSecond) {
+        if (stepsPerSecond <= 0) {
+            throw new IllegalArgumentException("Steps per second must be positive");
+        }
+        this.model = model;
+        this.stepNanos = 1_000_000_000L / stepsPerSecond;
+        publish();
+    }
+
+    /**
+     * Start stepping the model on a new thread.
+     */
+    synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::runLoop, "simulation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop stepping the model, and wait for the current step to finish.
+     */
+    synchronized void stop() {
+        running = false;
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+    }
+
+    private void runLoop() {
+        long last = System.nanoTime();
+        long next = last;
+        while (running) {
+            long now = System.nanoTime();
+            step((now - last) / 1e9);
+            last = now;
+
+            next += stepNanos;
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            } else if (wait < -stepNanos) {
+                // Fell behind, do not try to catch up with a burst of steps
+                next = System.nanoTime();
+            }
+        }
+    }
+
+    /**
+     * Advance the model by deltaT seconds and publish the result.
+     * Called by the simulation thread only.
+     */
+    void step(double deltaT) {
+        model.step(deltaT);
+        steps++;
+        publish();
+    }
+
+    private void publish() {
+        Snapshot snapshot = snapshots[back];
+        snapshot.copyFrom(model);
+        snapshot.step = steps;
+        back = state.getAndSet(back | FRESH) & ~FRESH;
+    }
+
+    /**
+     * The latest published snapshot. It stays unchanged until the next call, so it can
+     * be read without locking. Called by the rendering thread only.
+     */
+    Snapshot latest() {
+        if ((state.get() & FRESH) != 0) {
+            front = state.getAndSet(front) & ~FRESH;
+        }
+        return snapshots[front];
+    }
+}
@@ -0,0 +1,131 @@
+package bouncing_balls;
+
+import java.util.Arrays;
+
+/**
+ * Decides which balls of a {@link BallStore} are asleep.
+ *
+ * Balls that touch each other form an island, found with a union-find over the contacts
+ * of each update. An island falls asleep when all of its balls have been resting long
+ * enough, and wakes up as a whole as soon as one of its balls moves, for instance because
+ * a moving ball has hit it. Pairs of sleeping balls are not handed to the collision strategy.
+ *
+ * Balls that nearly touch also count as touching, so that an island does not split while
+ * its balls bounce slightly apart. The broad phase searches with the radii of
+ * {@link #reachRadii(BallStore)}, which include that margin.
+ */
+class SleepSystem {
+
+    /** Distance, relative to the sum of the radii, within which two balls count as touching */
+    private static final double CONTACT_MARGIN = 0.02;
+
+    private final double speedThresholdSquared;
+    private final double timeToSleep;
+
+    /** How long each ball has been resting */
+    private double[] restTime = new double[0];
+
+    /** Union-find parent of each ball, a ball is the root of its island if it is its own parent */
+    private int[] parent = new int[0];
+
+    /** Whether the island rooted at a ball has a ball that is not ready to sleep */
+    private boolean[] restless = new boolean[0];
+
+    /** Radii widened by the contact margin, for the broad phase */
+    private double[] reach = new double[0];
+
+    SleepSystem(double speedThreshold, double timeToSleep) {
+        this.speedThresholdSquared = speedThreshold * speedThreshold;
+        this.timeToSleep = timeToSleep;
+    }
+
+    /**
+     * Start collecting the contacts of an update, each ball on its own island.
+     */
+    void startUpdate(int n) {
+        if (parent.length < n) {
+            restTime = Arrays.copyOf(restTime, n);
+            parent = new int[n];
+            restless = new boolean[n];
+        }
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+        }
+    }
+
+    /**
+     * @return the radii of the balls widened by the contact margin, so that the broad phase
+     * reports the pairs that count as touching; reused between updates
+     */
+    double[] reachRadii(BallStore balls) {
+        int n = balls.size();
+        if (reach.length < n) {
+            reach = new double[balls.radius.length];
+        }
+        for (int i = 0; i < n; i++) {
+            reach[i] = balls.radius[i] * (1 + CONTACT_MARGIN);
+        }
+        return reach;
+    }
+
+    /**
+     * Record a candidate pair, joining the islands of the balls if they touch.
+     *
+     * @return false if both balls are asleep and the pair can be skipped
+     */
+    boolean handlePair(BallStore balls, int i, int j) {
+        double dx = balls.x[j] - balls.x[i];
+        double dy = balls.y[j] - balls.y[i];
+        double reach = (balls.radius[i] + balls.radius[j]) * (1 + CONTACT_MARGIN);
+        if (dx * dx + dy * dy <= reach * reach) {
+            union(i, j);
+        }
+        return !(balls.asleep[i] && balls.asleep[j]);
+    }
+
+    /**
+     * Update how long each ball has been resting, then put islands where every ball has
+     * rested long enough to sleep and wake the others.
+     */
+    void finishUpdate(BallStore balls, double deltaT) {
+        int n = balls.size();
+        for (int i = 0; i < n; i++) {
+            if (!balls.asleep[i]) {
+                double speedSquared = balls.vx[i] * balls.vx[i] + balls.vy[i] * balls.vy[i];
+                restTime[i] = speedSquared < speedThresholdSquared ? restTime[i] + deltaT : 0;
+            }
+            restless[i] = false;
+        }
+        for (int i = 0; i < n; i++) {
+            if (!balls.asleep[i] && restTime[i] < timeToSleep) {
+                restless[find(i)] = true;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            boolean sleep = !restless[find(i)];
+            if (sleep && !balls.asleep[i]) {
+                balls.vx[i] = 0;
+                balls.vy[i] = 0;
+            } else if (!sleep && balls.asleep[i]) {
+                restTime[i] = 0;
+            }
+            balls.asleep[i] = sleep;
+        }
+    }
+
+    private int find(int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]]; // path halving
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private void union(int i, int j) {
+        int rootI = find(i);
+        int rootJ = find(j);
+        if (rootI != rootJ) {
+            parent[Math.max(rootI, rootJ)] = Math.min(rootI, rootJ);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package bouncing_balls;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads frames from a snapshot file written by {@link SnapshotWriter}.
+ *
+ * Any frame still in the file can be read directly, since its position follows from its index.
+ *
+ * @see SnapshotWriter
+ */
+public class SnapshotReader implements Closeable {
+
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final int ballCount;
+    private final int capacity;
+    private final double width;
+    private final double height;
+    private final double[] radius;
+    private final double[] mass;
+    private final DoubleBuffer[] segments;
+    private final int framesPerSegment;
+
+    public SnapshotReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        if (channel.size() < SnapshotWriter.HEADER_BYTES) {
+            channel.close();
+            throw new IOException("Not a snapshot file: " + file);
+        }
+        MappedByteBuffer start = channel.map(FileChannel.MapMode.READ_ONLY, 0, SnapshotWriter.HEADER_BYTES);
+        start.order(ByteOrder.LITTLE_ENDIAN);
+        if (start.getLong() != SnapshotWriter.MAGIC || start.getInt() != SnapshotWriter.VERSION) {
+            channel.close();
+            throw new IOException("Not a snapshot file: " + file);
+        }
+        ballCount = start.getInt();
+        capacity = start.getInt();
+        start.getInt(); // padding
+        width = start.getDouble();
+        height = start.getDouble();
+
+        long dataStart = SnapshotWriter.dataStart(ballCount);
+        long frameBytes = SnapshotWriter.frameBytes(ballCount);
+        // Divided rather than multiplied, so that a corrupt header cannot overflow the size
+        if (ballCount < 0 || capacity < 1 || (channel.size() - dataStart) / frameBytes < capacity) {
+            channel.close();
+            throw new IOException("Truncated snapshot file: " + file);
+        }
+        try {
+            header = channel.map(FileChannel.MapMode.READ_ONLY, 0, dataStart);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            DoubleBuffer properties = header.position(SnapshotWriter.HEADER_BYTES).slice()
+                    .order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+            radius = new double[ballCount];
+            mass = new double[ballCount];
+            properties.get(radius);
+            properties.get(mass);
+
+            framesPerSegment = (int) Math.min(capacity, SnapshotWriter.MAX_SEGMENT_BYTES / frameBytes);
+            segments = new DoubleBuffer[(capacity + framesPerSegment - 1) / framesPerSegment];
+            for (int s = 0; s < segments.length; s++) {
+                long offset = dataStart + (long) s * framesPerSegment * frameBytes;
+                long size = Math.min(framesPerSegment, capacity - (long) s * framesPerSegment) * frameBytes;
+                segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, offset, size)
+                        .order(ByteOrder.LITTLE_ENDIAN)
+                        .asDoubleBuffer();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of frames written to the file, including those that have been overwritten
+     */
+    public long getFramesWritten() {
+        return header.getLong(SnapshotWriter.FRAMES_WRITTEN_OFFSET);
+    }
+
+    /**
+     * @return the index of the oldest frame still in the file
+     */
+    public long getFirstFrame() {
+        return Math.max(0, getFramesWritten() - capacity);
+    }
+
+    /**
+     * @return the number of balls in each frame
+     */
+    public int getBallCount() {
+        return ballCount;
+    }
+
+    /**
+     * Read a frame into a store. Balls are added to the store until it holds as many
+     * as the frame, and the first balls of the store are overwritten.
+     *
+     * @return the simulation time of the frame
+     * @throws IllegalArgumentException if the frame is not in the file
+     */
+    public double read(long frame, BallStore balls) {
+        if (frame < getFirstFrame() || frame >= getFramesWritten()) {
+            throw new IllegalArgumentException("Frame " + frame + " is not in the file, which holds frames "
+                    + getFirstFrame() + " to " + (getFramesWritten() - 1));
+        }
+        int slot = (int) (frame % capacity);
+        DoubleBuffer data = segments[slot / framesPerSegment].duplicate();
+        data.position((slot % framesPerSegment) * (1 + 4 * ballCount));
+
+        double time = data.get();
+        while (balls.size() < ballCount) {
+            balls.add(0, 0, 0, 0, 0, 0);
+        }
+        for (int i = 0; i < ballCount; i++) {
+            balls.set(i, 0, 0, 0, 0, radius[i], mass[i]);
+        }
+        data.get(balls.x, 0, ballCount);
+        data.get(balls.y, 0, ballCount);
+        data.get(balls.vx, 0, ballCount);
+        data.get(balls.vy, 0, ballCount);
+        return time;
+    }
+
+    /**
+     * Restore a model from a frame.
+     *
+     * @param engine the physics engine to run the restored model with
+     */
+    public Model restore(long frame, PhysicsEngine engine) {
+        BallStore balls = new BallStore(ballCount);
+        read(frame, balls);
+        return new Model(width, height, balls, engine);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
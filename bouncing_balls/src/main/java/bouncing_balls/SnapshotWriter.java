@@ -0,0 +1,149 @@
+package bouncing_balls;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes the state of a {@link BallStore} to a memory-mapped snapshot file, one frame per call to {@link #append(double)}.
+ *
+ * The file holds a fixed number of frame slots used as a ring, so a long run keeps its
+ * most recent frames in a file of bounded size. Frames are copied straight into the mapped
+ * file with bulk puts, and the operating system writes them to disk in the background, so
+ * appending costs about as much as copying the arrays.
+ *
+ * File layout, little-endian:
+ * <pre>
+ * header   magic, version, ball count, frame capacity, width, height, frames written
+ * radius   one double per ball
+ * mass     one double per ball
+ * frames   capacity slots of: time, x[n], y[n], vx[n], vy[n]
+ * </pre>
+ * Frame k is stored in slot k modulo the capacity, so it can be found without scanning.
+ *
+ * @see SnapshotReader
+ */
+public class SnapshotWriter implements Closeable {
+
+    static final long MAGIC = 0x5041_4e53_4c4c_4142L; // "BALLSNAP"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 48;
+
+    /** Offset of the number of frames written, within the header */
+    static final int FRAMES_WRITTEN_OFFSET = 40;
+
+    /** Upper bound on the size of one mapping */
+    static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+    private final BallStore balls;
+    private final FileChannel channel;
+    private final int ballCount;
+    private final int capacity;
+    private final MappedByteBuffer header;
+
+    /** Mappings of the frame slots, framesPerSegment frames in each */
+    private final DoubleBuffer[] segments;
+    private final int framesPerSegment;
+
+    private long framesWritten;
+
+    /**
+     * Create a snapshot file for the balls in a store. The number of balls must not change while writing.
+     *
+     * @param file the file to create or overwrite
+     * @param balls the balls to record
+     * @param width the width of the area
+     * @param height the height of the area
+     * @param capacity the number of frames kept in the file
+     */
+    public SnapshotWriter(Path file, BallStore balls, double width, double height, int capacity) throws IOException {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.balls = balls;
+        this.ballCount = balls.size();
+        this.capacity = capacity;
+
+        long frameBytes = frameBytes(ballCount);
+        if (frameBytes > MAX_SEGMENT_BYTES) {
+            throw new IllegalArgumentException("Too many balls for one frame: " + ballCount);
+        }
+        framesPerSegment = (int) Math.min(capacity, MAX_SEGMENT_BYTES / frameBytes);
+        long dataStart = dataStart(ballCount);
+        long fileSize = dataStart + frameBytes * capacity;
+
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, dataStart);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        header.putLong(MAGIC)
+                .putInt(VERSION)
+                .putInt(ballCount)
+                .putInt(capacity)
+                .putInt(0) // padding
+                .putDouble(width)
+                .putDouble(height)
+                .putLong(0);
+        DoubleBuffer properties = header.asDoubleBuffer();
+        properties.put(balls.radius, 0, ballCount);
+        properties.put(balls.mass, 0, ballCount);
+
+        segments = new DoubleBuffer[(capacity + framesPerSegment - 1) / framesPerSegment];
+        for (int s = 0; s < segments.length; s++) {
+            long start = dataStart + s * framesPerSegment * frameBytes;
+            long size = Math.min(framesPerSegment, capacity - (long) s * framesPerSegment) * frameBytes;
+            segments[s] = channel.map(FileChannel.MapMode.READ_WRITE, start, size)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .asDoubleBuffer();
+        }
+    }
+
+    /**
+     * Write the current state of the balls as the next frame, overwriting the oldest frame once the file is full.
+     *
+     * @param time the simulation time of the frame
+     */
+    public void append(double time) {
+        int slot = (int) (framesWritten % capacity);
+        DoubleBuffer segment = segments[slot / framesPerSegment];
+        segment.position((slot % framesPerSegment) * (1 + 4 * ballCount));
+        segment.put(time);
+        segment.put(balls.x, 0, ballCount);
+        segment.put(balls.y, 0, ballCount);
+        segment.put(balls.vx, 0, ballCount);
+        segment.put(balls.vy, 0, ballCount);
+
+        framesWritten++;
+        header.putLong(FRAMES_WRITTEN_OFFSET, framesWritten);
+    }
+
+    /**
+     * @return the number of frames appended so far, including those that have been overwritten
+     */
+    public long getFramesWritten() {
+        return framesWritten;
+    }
+
+    /**
+     * Flush the file to disk and close it.
+     */
+    @Override
+    public void close() throws IOException {
+        header.force();
+        channel.force(false);
+        channel.close();
+    }
+
+    static long frameBytes(int ballCount) {
+        return Double.BYTES * (1 + 4L * ballCount);
+    }
+
+    static long dataStart(int ballCount) {
+        return HEADER_BYTES + Double.BYTES * 2L * ballCount;
+    }
+}
@@ -0,0 +1,114 @@
+package bouncing_balls;
+
+/**
+ * Broad phase that sorts objects along the x-axis and sweeps over the sorted list.
+ *
+ * The sorted order is kept between calls and fixed up with an insertion sort. When the
+ * objects hardly move from one update to the next, as for balls resting on the floor,
+ * the list is nearly sorted already and each call costs close to O(n + k), where k is
+ * the number of pairs whose x-intervals overlap.
+ *
+ * Objects are identified by their index, so the order is rebuilt from scratch when the
+ * number of objects changes.
+ */
+public class SweepAndPruneBroadPhase implements BroadPhase {
+
+    /** Object indices sorted by the left end of their x-interval */
+    private int[] order = new int[0];
+
+    /** Left end of the x-interval of order[k] */
+    private double[] minX = new double[0];
+
+    /** Scratch space for the full sort */
+    private int[] scratch = new int[0];
+
+    /** Number of objects in the sorted order */
+    private int count;
+
+    @Override
+    public void findPairs(double[] x, double[] y, double[] radius, int count, PairHandler handler) {
+        if (count != this.count) {
+            reset(x, radius, count);
+        } else {
+            for (int k = 0; k < count; k++) {
+                int i = order[k];
+                minX[k] = x[i] - radius[i];
+            }
+            insertionSort(count);
+        }
+
+        for (int a = 0; a < count; a++) {
+            int i = order[a];
+            double maxX = x[i] + radius[i];
+            for (int b = a + 1; b < count && minX[b] <= maxX; b++) {
+                int j = order[b];
+                if (Math.abs(y[j] - y[i]) <= radius[i] + radius[j]) {
+                    handler.handlePair(Math.min(i, j), Math.max(i, j));
+                }
+            }
+        }
+    }
+
+    /**
+     * Sort the order by the current left ends. Fast when the order is nearly sorted.
+     */
+    private void insertionSort(int count) {
+        for (int k = 1; k < count; k++) {
+            int index = order[k];
+            double key = minX[k];
+            int m = k - 1;
+            while (m >= 0 && minX[m] > key) {
+                order[m + 1] = order[m];
+                minX[m + 1] = minX[m];
+                m--;
+            }
+            order[m + 1] = index;
+            minX[m + 1] = key;
+        }
+    }
+
+    /**
+     * Build the sorted order from scratch with a merge sort,
+     * since an insertion sort of unsorted objects is O(n^2).
+     */
+    private void reset(double[] x, double[] radius, int count) {
+        if (order.length < count) {
+            order = new int[count];
+            minX = new double[count];
+            scratch = new int[count];
+        }
+        this.count = count;
+        double[] keys = new double[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+            keys[i] = x[i] - radius[i];
+        }
+
+        int[] from = order;
+        int[] to = scratch;
+        for (int width = 1; width < count; width *= 2) {
+            for (int lo = 0; lo < count; lo += 2 * width) {
+                int mid = Math.min(lo + width, count);
+                int hi = Math.min(lo + 2 * width, count);
+                int a = lo;
+                int b = mid;
+                for (int k = lo; k < hi; k++) {
+                    if (a < mid && (b >= hi || keys[from[a]] <= keys[from[b]])) {
+                        to[k] = from[a++];
+                    } else {
+                        to[k] = from[b++];
+                    }
+                }
+            }
+            int[] swap = from;
+            from = to;
+            to = swap;
+        }
+        order = from;
+        scratch = to;
+
+        for (int k = 0; k < count; k++) {
+            minX[k] = keys[order[k]];
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package bouncing_balls;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads trajectory data written by {@link TrajectoryWriter}, one frame at a time.
+ *
+ * @see TrajectoryWriter
+ */
+public class TrajectoryReader implements Closeable {
+
+    private final DataInputStream in;
+    private final int ballCount;
+    private final double precision;
+
+    /** Quantized positions of the current frame */
+    private final long[] x;
+    private final long[] y;
+    private double time;
+
+    public TrajectoryReader(InputStream input) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(input, 1 << 16));
+        if (in.readLong() != TrajectoryWriter.MAGIC || in.readInt() != TrajectoryWriter.VERSION) {
+            throw new IOException("Not trajectory data");
+        }
+        ballCount = in.readInt();
+        precision = in.readDouble();
+        in.readInt(); // keyframe interval
+        x = new long[ballCount];
+        y = new long[ballCount];
+    }
+
+    /**
+     * Read the next frame.
+     *
+     * @return false if there are no more frames
+     */
+    public boolean next() throws IOException {
+        int type = in.read();
+        if (type < 0) {
+            return false;
+        }
+        time = in.readDouble();
+        if (type == TrajectoryWriter.KEYFRAME) {
+            for (int i = 0; i < ballCount; i++) {
+                x[i] = readVarLong();
+                y[i] = readVarLong();
+            }
+        } else if (type == TrajectoryWriter.DELTA) {
+            long moved = readVarLong();
+            int i = -1;
+            for (long k = 0; k < moved; k++) {
+                i += (int) readVarLong();
+                x[i] += readVarLong();
+                y[i] += readVarLong();
+            }
+        } else {
+            throw new IOException("Unknown frame type: " + type);
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of balls in every frame
+     */
+    public int getBallCount() {
+        return ballCount;
+    }
+
+    /**
+     * @return the simulation time of the current frame
+     */
+    public double getTime() {
+        return time;
+    }
+
+    /**
+     * @return the x-coordinate of ball i in the current frame
+     */
+    public double getX(int i) {
+        return x[i] * precision;
+    }
+
+    /**
+     * @return the y-coordinate of ball i in the current frame
+     */
+    public double getY(int i) {
+        return y[i] * precision;
+    }
+
+    private long readVarLong() throws IOException {
+        long zigZag = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Trajectory data ends inside a frame");
+            }
+            zigZag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigZag >>> 1) ^ -(zigZag & 1);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,246 @@
+package bouncing_balls;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Streams the positions of the balls of a long run to compact trajectory data.
+ *
+ * Positions are rounded to a configurable precision and stored as integers. Every
+ * keyframeInterval frames all positions are written in full, and in between only the
+ * change since the previous frame is written for the balls that moved. Balls that did
+ * not move, such as sleeping balls, take no space at all in those frames. All integers
+ * are written as variable-length zig-zag numbers, so small changes take one or two bytes.
+ *
+ * {@link #append(BallStore, double)} only copies the positions into a free frame buffer
+ * and hands it to a background thread that does the encoding and writing. There is a
+ * fixed number of buffers, so when the writer falls behind, append waits for a buffer
+ * instead of using more memory.
+ *
+ * Stream layout:
+ * <pre>
+ * header      magic, version, ball count, precision, keyframe interval
+ * keyframe    0, time, x and y of every ball
+ * delta       1, time, number of moved balls, then for each: index gap, dx, dy
+ * </pre>
+ *
+ * @see TrajectoryReader
+ */
+public class TrajectoryWriter implements Closeable {
+
+    static final long MAGIC = 0x4241_4c4c_5452_414aL; // "BALLTRAJ"
+    static final int VERSION = 1;
+    static final byte KEYFRAME = 0;
+    static final byte DELTA = 1;
+
+    private final int ballCount;
+    private final double precision;
+    private final int keyframeInterval;
+    private final DataOutputStream out;
+
+    /** Frame buffers ready to be filled, and filled buffers waiting to be encoded */
+    private final BlockingQueue<Frame> free;
+    private final BlockingQueue<Frame> filled;
+
+    /** Frame that tells the encoder to stop */
+    private final Frame end = new Frame(0);
+
+    private final Thread encoder;
+
+    /** Error from the encoder thread, thrown from the next call */
+    private volatile IOException error;
+
+    /** Quantized positions of the last frame written, owned by the encoder thread */
+    private final long[] lastX;
+    private final long[] lastY;
+    private long framesEncoded;
+
+    /**
+     * Start a writer on its own background thread.
+     *
+     * @param output the stream to write to, closed with the writer
+     * @param ballCount the number of balls in every frame
+     * @param precision the precision of the stored positions, in meters
+     * @param keyframeInterval the number of frames from one full frame to the next
+     * @param buffers the number of frames that may wait to be encoded
+     */
+    public TrajectoryWriter(OutputStream output, int ballCount, double precision, int keyframeInterval, int buffers)
+            throws IOException {
+        if (precision <= 0 || keyframeInterval < 1 || buffers < 1) {
+            throw new IllegalArgumentException("Precision, keyframe interval and buffers must be positive");
+        }
+        this.ballCount = ballCount;
+        this.precision = precision;
+        this.keyframeInterval = keyframeInterval;
+        this.out = new DataOutputStream(new BufferedOutputStream(output, 1 << 16));
+        this.lastX = new long[ballCount];
+        this.lastY = new long[ballCount];
+
+        out.writeLong(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(ballCount);
+        out.writeDouble(precision);
+        out.writeInt(keyframeInterval);
+
+        free = new ArrayBlockingQueue<>(buffers);
+        filled = new ArrayBlockingQueue<>(buffers + 1);
+        for (int i = 0; i < buffers; i++) {
+            free.add(new Frame(ballCount));
+        }
+        encoder = new Thread(this::encodeFrames, "trajectory-writer");
+        encoder.setDaemon(true);
+        encoder.start();
+    }
+
+    /**
+     * Queue the current positions of the balls as the next frame.
+     * Waits if all frame buffers are waiting to be encoded.
+     *
+     * @param time the simulation time of the frame
+     * @throws IOException if writing an earlier frame failed
+     */
+    public void append(BallStore balls, double time) throws IOException {
+        checkError();
+        Frame frame;
+        try {
+            frame = free.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a frame buffer");
+        }
+        frame.time = time;
+        System.arraycopy(balls.x, 0, frame.x, 0, ballCount);
+        System.arraycopy(balls.y, 0, frame.y, 0, ballCount);
+        filled.add(frame);
+    }
+
+    /**
+     * Wait for the queued frames to be written, then close the stream.
+     */
+    @Override
+    public void close() throws IOException {
+        filled.add(end);
+        try {
+            encoder.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the writer to finish");
+        }
+        out.close();
+        checkError();
+    }
+
+    private void checkError() throws IOException {
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Body of the encoder thread.
+     */
+    private void encodeFrames() {
+        try {
+            Frame frame;
+            while ((frame = filled.take()) != end) {
+                if (error == null) {
+                    try {
+                        encode(frame);
+                    } catch (IOException e) {
+                        error = e;
+                    }
+                }
+                free.add(frame);
+            }
+            if (error == null) {
+                out.flush();
+            }
+        } catch (IOException e) {
+            error = e;
+        } catch (InterruptedException e) {
+            error = new InterruptedIOException("Trajectory writer interrupted");
+        }
+    }
+
+    private void encode(Frame frame) throws IOException {
+        boolean keyframe = framesEncoded % keyframeInterval == 0;
+        out.writeByte(keyframe ? KEYFRAME : DELTA);
+        out.writeDouble(frame.time);
+        if (keyframe) {
+            for (int i = 0; i < ballCount; i++) {
+                lastX[i] = Math.round(frame.x[i] / precision);
+                lastY[i] = Math.round(frame.y[i] / precision);
+                writeVarLong(lastX[i]);
+                writeVarLong(lastY[i]);
+            }
+        } else {
+            encodeDelta(frame);
+        }
+        framesEncoded++;
+    }
+
+    /**
+     * Write the balls that moved since the last frame. Their quantized positions are
+     * compared first, so that unmoved balls can be skipped when counting.
+     */
+    private void encodeDelta(Frame frame) throws IOException {
+        long[] qx = frame.quantizedX;
+        long[] qy = frame.quantizedY;
+        int moved = 0;
+        for (int i = 0; i < ballCount; i++) {
+            qx[i] = Math.round(frame.x[i] / precision);
+            qy[i] = Math.round(frame.y[i] / precision);
+            if (qx[i] != lastX[i] || qy[i] != lastY[i]) {
+                moved++;
+            }
+        }
+        writeVarLong(moved);
+        int previous = -1;
+        for (int i = 0; i < ballCount; i++) {
+            if (qx[i] != lastX[i] || qy[i] != lastY[i]) {
+                writeVarLong(i - previous);
+                writeVarLong(qx[i] - lastX[i]);
+                writeVarLong(qy[i] - lastY[i]);
+                lastX[i] = qx[i];
+                lastY[i] = qy[i];
+                previous = i;
+            }
+        }
+    }
+
+    /**
+     * Write a number in zig-zag form, 7 bits per byte, so that numbers close to zero take few bytes.
+     */
+    private void writeVarLong(long value) throws IOException {
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~0x7FL) != 0) {
+            out.writeByte((int) ((zigZag & 0x7F) | 0x80));
+            zigZag >>>= 7;
+        }
+        out.writeByte((int) zigZag);
+    }
+
+    /**
+     * A reusable buffer for the positions of one frame.
+     */
+    private static class Frame {
+        double time;
+        final double[] x;
+        final double[] y;
+        final long[] quantizedX;
+        final long[] quantizedY;
+
+        Frame(int ballCount) {
+            x = new double[ballCount];
+            y = new double[ballCount];
+            quantizedX = new long[ballCount];
+            quantizedY = new long[ballCount];
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package bouncing_balls;
+
+/**
+ * Broad phase that bins objects into a uniform grid.
+ *
+ * The cell size is the largest diameter in the scene, so two overlapping objects are
+ * always in the same or in neighbouring cells. Each object is then only tested against
+ * the objects in the 3x3 block of cells around it.
+ *
+ * The grid is rebuilt on every call with a counting sort, reusing its arrays between
+ * calls so that no memory is allocated once the scene size has settled.
+ */
+public class UniformGridBroadPhase implements BroadPhase {
+
+    /** Upper bound on the number of cells per object, to keep sparse scenes from using too much memory */
+    private static final int MAX_CELLS_PER_OBJECT = 4;
+
+    /** Cell index of each object */
+    int[] cellOf = new int[0];
+
+    /** Object indices sorted by cell */
+    int[] sorted = new int[0];
+
+    /** Start of each cell in sorted, cellStart[c + 1] is the end */
+    int[] cellStart = new int[0];
+
+    int columns;
+    int rows;
+    private double cellSize;
+    private double minX;
+    private double minY;
+
+    @Override
+    public void findPairs(double[] x, double[] y, double[] radius, int count, PairHandler handler) {
+        if (count < 2) {
+            return;
+        }
+        buildGrid(x, y, radius, count);
+
+        for (int i = 0; i < count; i++) {
+            int cell = cellOf[i];
+            int cx = cell % columns;
+            int cy = cell / columns;
+            int fromX = Math.max(cx - 1, 0);
+            int toX = Math.min(cx + 1, columns - 1);
+            int fromY = Math.max(cy - 1, 0);
+            int toY = Math.min(cy + 1, rows - 1);
+
+            for (int ny = fromY; ny <= toY; ny++) {
+                for (int nx = fromX; nx <= toX; nx++) {
+                    int c = ny * columns + nx;
+                    for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+                        int j = sorted[k];
+                        if (j > i) {
+                            handler.handlePair(i, j);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Size the grid from the bounds of the objects and their largest radius,
+     * then sort the object indices by cell.
+     */
+    void buildGrid(double[] x, double[] y, double[] radius, int count) {
+        double maxRadius = 0;
+        minX = Double.POSITIVE_INFINITY;
+        minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            maxRadius = Math.max(maxRadius, radius[i]);
+            minX = Math.min(minX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxX = Math.max(maxX, x[i]);
+            maxY = Math.max(maxY, y[i]);
+        }
+
+        cellSize = Math.max(2 * maxRadius, Double.MIN_NORMAL);
+        double width = maxX - minX;
+        double height = maxY - minY;
+        double maxCells = Math.max(1024, (double) count * MAX_CELLS_PER_OBJECT);
+        // Grow the cells until the grid fits in the budget
+        while ((Math.floor(width / cellSize) + 1) * (Math.floor(height / cellSize) + 1) > maxCells) {
+            cellSize *= 2;
+        }
+        columns = (int) (width / cellSize) + 1;
+        rows = (int) (height / cellSize) + 1;
+
+        ensureCapacity(count, columns * rows);
+        int cells = columns * rows;
+        for (int c = 0; c <= cells; c++) {
+            cellStart[c] = 0;
+        }
+
+        // Count the objects in each cell
+        for (int i = 0; i < count; i++) {
+            int cx = Math.min((int) ((x[i] - minX) / cellSize), columns - 1);
+            int cy = Math.min((int) ((y[i] - minY) / cellSize), rows - 1);
+            int cell = cy * columns + cx;
+            cellOf[i] = cell;
+            cellStart[cell + 1]++;
+        }
+        // Turn the counts into start offsets
+        for (int c = 0; c < cells; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        // Place the objects, in index order within each cell
+        for (int i = 0; i < count; i++) {
+            sorted[cellStart[cellOf[i]]++] = i;
+        }
+        // Placing advanced every start to the end of its cell, shift them back
+        for (int c = cells; c > 0; c--) {
+            cellStart[c] = cellStart[c - 1];
+        }
+        cellStart[0] = 0;
+    }
+
+    /**
+     * Report the pairs that the objects in one cell form with the objects in the same cell
+     * or in a neighbouring cell with a higher index. Calling this for every cell of a built
+     * grid reports every candidate pair exactly once, and only touches the 3x3 block of
+     * cells around the given cell.
+     */
+    void findPairsInCell(int cell, PairHandler handler) {
+        int cx = cell % columns;
+        int cy = cell / columns;
+        int fromX = Math.max(cx - 1, 0);
+        int toX = Math.min(cx + 1, columns - 1);
+        int toY = Math.min(cy + 1, rows - 1);
+
+        for (int a = cellStart[cell]; a < cellStart[cell + 1]; a++) {
+            int i = sorted[a];
+            // Pairs within the cell
+            for (int b = a + 1; b < cellStart[cell + 1]; b++) {
+                handler.handlePair(i, sorted[b]);
+            }
+            // Pairs with the neighbouring cells that come after this one
+            for (int ny = cy; ny <= toY; ny++) {
+                for (int nx = ny == cy ? cx + 1 : fromX; nx <= toX; nx++) {
+                    int c = ny * columns + nx;
+                    for (int b = cellStart[c]; b < cellStart[c + 1]; b++) {
+                        int j = sorted[b];
+                        handler.handlePair(Math.min(i, j), Math.max(i, j));
+                    }
+                }
+            }
+        }
+    }
+
+    private void ensureCapacity(int count, int cells) {
+        if (cellOf.length < count) {
+            cellOf = new int[count];
+            sorted = new int[count];
+        }
+        if (cellStart.length < cells + 1) {
+            cellStart = new int[cells + 1];
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package bouncing_balls;
+
+/**
+ * Velocity Verlet, in its kick-drift-kick form: half of the velocity change before the
+ * balls move, and half with the forces at the new positions. Under constant fields such as
+ * gravity a ball follows its parabola exactly between bounces, whatever the step. Fields that
+ * are not constant are evaluated once per step: the first kick reuses the accelerations of
+ * the previous closing kick.
+ */
+public class VelocityVerletIntegrator implements Integrator {
+
+    @Override
+    public double firstKick() {
+        return 0.5;
+    }
+}
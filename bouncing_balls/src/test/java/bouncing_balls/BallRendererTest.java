@@ -0,0 +1,138 @@
+package bouncing_balls;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BallRendererTest {
+
+    static final int WHITE = 0xFFFFFF;
+    static final int RED = 0xFF0000;
+
+    SimulationLoop.Snapshot snapshot(double[] x, double[] y, double[] radius) {
+        SimulationLoop.Snapshot snapshot = new SimulationLoop.Snapshot();
+        snapshot.x = x;
+        snapshot.y = y;
+        snapshot.radius = radius;
+        snapshot.count = x.length;
+        return snapshot;
+    }
+
+    int rgb(BufferedImage image, int x, int y) {
+        return image.getRGB(x, y) & 0xFFFFFF;
+    }
+
+    @Test
+    void drawsBallsWithInvertedY() {
+        BallRenderer renderer = new BallRenderer(100);
+        // Ball of radius 10 px centred at (50, 100 - 30) px
+        BufferedImage image = renderer.render(snapshot(new double[] {0.5}, new double[] {0.3}, new double[] {0.1}), 200, 100);
+
+        assertEquals(RED, rgb(image, 50, 70));
+        assertEquals(RED, rgb(image, 59, 70));
+        assertEquals(RED, rgb(image, 50, 61));
+        assertEquals(WHITE, rgb(image, 62, 70));
+        assertEquals(WHITE, rgb(image, 58, 62), "Outside the circle, inside its box");
+        assertEquals(WHITE, rgb(image, 150, 50));
+    }
+
+    @Test
+    void clipsAndCullsBallsAtTheEdges() {
+        BallRenderer renderer = new BallRenderer(100);
+        BufferedImage image = renderer.render(snapshot(
+                new double[] {0, 1.9, 50, -3},
+                new double[] {0, 0.5, 0.5, -3},
+                new double[] {0.1, 0.2, 0.1, 0.1}), 200, 100);
+
+        assertEquals(RED, rgb(image, 0, 99));
+        assertEquals(RED, rgb(image, 199, 50));
+        assertEquals(WHITE, rgb(image, 100, 50));
+    }
+
+    @Test
+    void reusesImageAndSprites() {
+        BallRenderer renderer = new BallRenderer(100);
+        SimulationLoop.Snapshot balls = snapshot(new double[] {0.5}, new double[] {0.5}, new double[] {0.1});
+        BufferedImage image = renderer.render(balls, 100, 100);
+
+        balls.x[0] = 0.2;
+        assertSame(image, renderer.render(balls, 100, 100));
+        assertEquals(WHITE, rgb(image, 50, 50), "Previous frame cleared");
+        assertEquals(RED, rgb(image, 20, 50));
+        assertSame(renderer.sprite(10), renderer.sprite(10));
+        assertNotSame(image, renderer.render(balls, 120, 100));
+    }
+
+    @Test
+    void drawsDensityMapAboveCircleLimit() {
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            BallRenderer renderer = new BallRenderer(100, pool);
+            renderer.setCircleLimit(10);
+            // 1 ball in pixel (10, 89), 100 balls in pixel (50, 49)
+            double[] x = new double[101];
+            double[] y = new double[101];
+            double[] radius = new double[101];
+            x[0] = 0.105;
+            y[0] = 0.105;
+            for (int i = 1; i <= 100; i++) {
+                x[i] = 0.505;
+                y[i] = 0.505;
+            }
+            BufferedImage image = renderer.render(snapshot(x, y, radius), 100, 100);
+
+            assertEquals(0xFFFF00, rgb(image, 10, 89), "Least crowded");
+            assertEquals(0x800000, rgb(image, 50, 49), "Most crowded");
+            assertEquals(WHITE, rgb(image, 70, 70));
+
+            renderer.setCircleLimit(1000);
+            Arrays.fill(radius, 0.05);
+            image = renderer.render(snapshot(x, y, radius), 100, 100);
+            assertEquals(RED, rgb(image, 14, 89), "Circles again below the limit");
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void densityMapCountsEveryBallOnce() {
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            BallRenderer renderer = new BallRenderer(100, pool);
+            renderer.setCircleLimit(0);
+            Random random = new Random(1);
+            for (int frame = 0; frame < 2; frame++) {
+                // An image with more rows than bands, and some balls outside it
+                int n = 5000;
+                double[] x = new double[n];
+                double[] y = new double[n];
+                int[] expected = new int[97 * 131];
+                int max = 0;
+                for (int i = 0; i < n; i++) {
+                    x[i] = random.nextDouble() * 1.1 - 0.05;
+                    y[i] = random.nextDouble() * 0.4 * (frame + 1);
+                    int px = (int) Math.floor(x[i] * 100);
+                    int py = (int) Math.floor(131 - y[i] * 100);
+                    if (px >= 0 && px < 97 && py >= 0 && py < 131) {
+                        max = Math.max(max, ++expected[py * 97 + px]);
+                    }
+                }
+                BufferedImage image = renderer.render(snapshot(x, y, new double[n]), 97, 131);
+                for (int p = 0; p < expected.length; p++) {
+                    int rgb = rgb(image, p % 97, p / 97);
+                    assertEquals(expected[p] == 0, rgb == WHITE, "Pixel " + p);
+                    if (expected[p] == max) {
+                        assertEquals(0x800000, rgb, "Pixel " + p);
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
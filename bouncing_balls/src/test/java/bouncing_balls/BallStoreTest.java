@@ -0,0 +1,71 @@
+package bouncing_balls;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BallStoreTest {
+
+    @Test
+    void addGrowsStore() {
+        BallStore store = new BallStore(1);
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i, store.add(i, 2 * i, 0, 0, 1, 1));
+        }
+        assertEquals(20, store.size());
+        assertEquals(19, store.get(19).getX());
+        assertEquals(38, store.get(19).getY());
+    }
+
+    @Test
+    void viewWritesThroughToStore() {
+        BallStore store = new BallStore(2);
+        store.add(1, 2, 3, 4, 0.5, 2);
+        PhysicalObject view = store.get(0);
+
+        view.setX(5);
+        view.setVY(-1);
+
+        assertEquals(5, store.x[0]);
+        assertEquals(-1, store.vy[0]);
+        assertEquals(0.5, view.getRadius());
+        assertEquals(2, view.getMass());
+    }
+
+    @Test
+    void storeUpdateMatchesObjectUpdate() {
+        Random random = new Random(1);
+        int count = 300;
+        BallStore store = new BallStore(count);
+        Ball[] balls = new Ball[count];
+        for (int i = 0; i < count; i++) {
+            double r = 0.05 + random.nextDouble() * 0.1;
+            double x = r + random.nextDouble() * (10 - 2 * r);
+            double y = r + random.nextDouble() * (10 - 2 * r);
+            double vx = random.nextDouble() * 4 - 2;
+            double vy = random.nextDouble() * 4 - 2;
+            store.add(x, y, vx, vy, r, r * r);
+            balls[i] = new Ball(x, y, vx, vy, r, r * r);
+        }
+
+        PhysicsEngine storeEngine = new PhysicsEngine(10, 10);
+        // Only the pairwise form, so both engines resolve the pairs one by one in the same order
+        storeEngine.setCollisionStrategy(new BallCollisionStrategy()::handleCollision);
+        PhysicsEngine objectEngine = new PhysicsEngine(10, 10);
+        objectEngine.setCollisionStrategy(new BallCollisionStrategy());
+
+        for (int step = 0; step < 50; step++) {
+            storeEngine.update(store, 0.01);
+            objectEngine.update(balls, 0.01);
+        }
+
+        for (int i = 0; i < count; i++) {
+            assertEquals(balls[i].x, store.x[i], 1e-9);
+            assertEquals(balls[i].y, store.y[i], 1e-9);
+            assertEquals(balls[i].vx, store.vx[i], 1e-9);
+            assertEquals(balls[i].vy, store.vy[i], 1e-9);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package bouncing_balls;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BroadPhaseTest {
+
+    static final int COUNT = 500;
+
+    double[] x = new double[COUNT];
+    double[] y = new double[COUNT];
+    double[] radius = new double[COUNT];
+
+    void randomScene(long seed, double size) {
+        Random random = new Random(seed);
+        for (int i = 0; i < COUNT; i++) {
+            x[i] = random.nextDouble() * size;
+            y[i] = random.nextDouble() * size;
+            radius[i] = 0.05 + random.nextDouble() * 0.2;
+        }
+    }
+
+    /**
+     * Collect the candidate pairs that actually overlap.
+     */
+    Set<Long> overlappingPairs(BroadPhase broadPhase) {
+        Set<Long> pairs = new HashSet<>();
+        broadPhase.findPairs(x, y, radius, COUNT, (i, j) -> {
+            assertTrue(i < j, "Pair not ordered");
+            double dx = x[j] - x[i];
+            double dy = y[j] - y[i];
+            double r = radius[i] + radius[j];
+            if (dx * dx + dy * dy < r * r) {
+                assertTrue(pairs.add((long) i * COUNT + j), "Pair reported twice");
+            }
+        });
+        return pairs;
+    }
+
+    @Test
+    void uniformGridFindsSameContactsAsBruteForce() {
+        randomScene(1, 10);
+        Set<Long> expected = overlappingPairs(new BruteForceBroadPhase());
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, overlappingPairs(new UniformGridBroadPhase()));
+    }
+
+    @Test
+    void uniformGridHandlesSparseScene() {
+        randomScene(2, 10000);
+        x[1] = x[0] + 0.01;
+        y[1] = y[0];
+        Set<Long> expected = overlappingPairs(new BruteForceBroadPhase());
+        assertEquals(expected, overlappingPairs(new UniformGridBroadPhase()));
+    }
+
+    @Test
+    void uniformGridSkipsDistantPairs() {
+        randomScene(3, 100);
+        int[] candidates = new int[1];
+        new UniformGridBroadPhase().findPairs(x, y, radius, COUNT, (i, j) -> candidates[0]++);
+        assertTrue(candidates[0] < COUNT * (COUNT - 1) / 20, "Too many candidate pairs: " + candidates[0]);
+    }
+
+    @Test
+    void sweepAndPruneFindsSameContactsAsBruteForce() {
+        randomScene(4, 10);
+        Set<Long> expected = overlappingPairs(new BruteForceBroadPhase());
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, overlappingPairs(new SweepAndPruneBroadPhase()));
+    }
+
+    @Test
+    void sweepAndPruneStaysCorrectWhenObjectsMove() {
+        randomScene(5, 10);
+        SweepAndPruneBroadPhase sweepAndPrune = new SweepAndPruneBroadPhase();
+        Random random = new Random(6);
+        for (int frame = 0; frame < 20; frame++) {
+            for (int i = 0; i < COUNT; i++) {
+                x[i] += (random.nextDouble() - 0.5) * 0.2;
+                y[i] += (random.nextDouble() - 0.5) * 0.2;
+            }
+            assertEquals(overlappingPairs(new BruteForceBroadPhase()), overlappingPairs(sweepAndPrune),
+                    "Wrong contacts at frame " + frame);
+        }
+    }
+
+    @Test
+    void uniformGridCellsCoverEveryContactOnce() {
+        randomScene(7, 10);
+        UniformGridBroadPhase grid = new UniformGridBroadPhase();
+        BroadPhase byCell = (x, y, radius, count, handler) -> {
+            grid.buildGrid(x, y, radius, count);
+            for (int cell = 0; cell < grid.columns * grid.rows; cell++) {
+                grid.findPairsInCell(cell, handler);
+            }
+        };
+        assertEquals(overlappingPairs(new BruteForceBroadPhase()), overlappingPairs(byCell));
+    }
+}
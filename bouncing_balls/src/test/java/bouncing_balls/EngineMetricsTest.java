@@ -0,0 +1,100 @@
+package bouncing_balls;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EngineMetricsTest {
+
+    BallStore balls() {
+        BallStore balls = new BallStore(3);
+        // Two overlapping balls, and one about to hit the left wall
+        balls.add(2, 2, 0, 0, 0.2, 1);
+        balls.add(2.3, 2, 0, 0, 0.2, 1);
+        balls.add(0.21, 3, -1, 0, 0.2, 1);
+        return balls;
+    }
+
+    @Test
+    void histogramSummarisesValues() {
+        EngineMetrics.Histogram histogram = new EngineMetrics.Histogram();
+        for (int value = 1; value <= 100; value++) {
+            histogram.record(value);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(50.5, histogram.getMean(), 1e-12);
+        assertEquals(1, histogram.getMin());
+        assertEquals(100, histogram.getMax());
+        // 50 lies in the bucket 32 to 63, 99 in the bucket 64 to 127
+        assertEquals(63, histogram.getPercentile(0.5));
+        assertEquals(100, histogram.getPercentile(0.99));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(0.5));
+    }
+
+    @Test
+    void recordsEveryUpdate() {
+        for (PhysicsEngine engine : new PhysicsEngine[] {new PhysicsEngine(5, 5), new ParallelPhysicsEngine(5, 5)}) {
+            engine.setCollisionStrategy(new ProjectionBallCollisionStrategy());
+            EngineMetrics metrics = new EngineMetrics();
+            engine.setMetrics(metrics);
+            BallStore balls = balls();
+
+            engine.update(balls, 0.02);
+            engine.update(balls, 0.02);
+
+            assertEquals(2, metrics.getSteps());
+            assertEquals(2, metrics.phase(EngineMetrics.Phase.COLLIDE).getCount());
+            assertEquals(1, metrics.candidatePairs.getMax(), "Only the overlapping pair is a candidate");
+            assertEquals(1, metrics.contacts.getMax());
+            assertEquals(1, metrics.wallHits.getMax());
+            assertTrue(metrics.getMeanStepNanos() > 0);
+
+            engine.setMetrics(null);
+            engine.update(balls, 0.02);
+            assertEquals(2, metrics.getSteps());
+        }
+    }
+
+    @Test
+    void writesJsonAndCsv() throws IOException {
+        EngineMetrics metrics = new EngineMetrics();
+        metrics.recordPhase(EngineMetrics.Phase.STEP, 1000);
+        metrics.recordStep(10, 2, 1, 0);
+
+        String json = metrics.getJson();
+        assertTrue(json.contains("\"stepNanos\": {\"count\": 1, \"mean\": 1000.0"), json);
+        assertTrue(json.contains("\"candidatePairs\": {\"count\": 1, \"mean\": 10.0"), json);
+
+        StringBuilder csv = new StringBuilder();
+        metrics.writeCsv(csv);
+        assertTrue(csv.toString().startsWith("metric,count,mean,min,p50,p90,p99,max\n"));
+        assertTrue(csv.toString().contains("contacts,1,2.0,2,2,2,2,2"), csv.toString());
+    }
+
+    @Test
+    void readableOverJmx() throws JMException {
+        EngineMetrics metrics = new EngineMetrics();
+        metrics.recordPhase(EngineMetrics.Phase.STEP, 1000);
+        metrics.register("test");
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("bouncing_balls:type=EngineMetrics,name=\"test\"");
+        try {
+            assertEquals(1L, server.getAttribute(name, "Steps"));
+            server.invoke(name, "reset", null, null);
+            assertEquals(0, metrics.getSteps());
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package bouncing_balls;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EnsembleRunnerTest {
+
+    Properties properties(String... pairs) {
+        Properties properties = new Properties();
+        for (String pair : pairs) {
+            int split = pair.indexOf('=');
+            properties.setProperty(pair.substring(0, split), pair.substring(split + 1));
+        }
+        return properties;
+    }
+
+    @Test
+    void sweepExpandsEveryCombination() {
+        List<Properties> worlds = EnsembleRunner.sweep(properties(
+                "balls=10", "seed=5", "sweep.speed=1,2", "sweep.maxRadius=0.02, 0.03, 0.04", "replicas=2"));
+
+        assertEquals(2 * 3 * 2, worlds.size());
+        assertEquals("0.02", worlds.get(0).getProperty("maxRadius"));
+        assertEquals("1", worlds.get(0).getProperty("speed"));
+        assertEquals("5", worlds.get(0).getProperty("seed"));
+        assertEquals("6", worlds.get(1).getProperty("seed"));
+        assertEquals("2", worlds.get(2).getProperty("speed"));
+        assertEquals("0.04", worlds.get(11).getProperty("maxRadius"));
+        assertEquals("10", worlds.get(11).getProperty("balls"));
+        assertNull(worlds.get(0).getProperty("sweep.speed"));
+    }
+
+    @Test
+    void worldsMatchSeparateRuns() {
+        List<Properties> settings = EnsembleRunner.sweep(properties(
+                "balls=50", "width=2", "height=2", "sweep.speed=1,3", "replicas=2"));
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            EnsembleRunner ensemble = new EnsembleRunner(settings, pool);
+            ensemble.run(40, 1.0 / 60);
+
+            for (int w = 0; w < settings.size(); w++) {
+                Model alone = Scenario.fromProperties(settings.get(w)).createModel();
+                InvariantMonitor monitor = new InvariantMonitor();
+                double sum = 0;
+                double min = Double.POSITIVE_INFINITY;
+                for (int step = 0; step <= 40; step++) {
+                    if (step > 0) {
+                        alone.advance(1.0 / 60);
+                    }
+                    monitor.check(alone.balls, 0);
+                    sum += monitor.getKineticEnergy();
+                    min = Math.min(min, monitor.getKineticEnergy());
+                }
+                assertArrayEquals(alone.balls.x, ensemble.getWorld(w).balls.x);
+                assertEquals(sum / 41, ensemble.getMean(w, EnsembleRunner.KINETIC), 1e-9 * sum);
+                assertEquals(min, ensemble.getMin(w, EnsembleRunner.KINETIC));
+                assertTrue(ensemble.getVariance(w, EnsembleRunner.HEIGHT) > 0);
+            }
+
+            StringWriter csv = new StringWriter();
+            ensemble.writeCsv(csv, List.of("speed"));
+            String[] lines = csv.toString().split("\n");
+            assertEquals(5, lines.length);
+            assertTrue(lines[0].startsWith("world,speed,seed,kineticMean,"));
+            assertTrue(lines[3].startsWith("2,3,1,"), lines[3]);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void rejectsParallelEngine() {
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            assertThrows(IllegalArgumentException.class,
+                    () -> new EnsembleRunner(EnsembleRunner.sweep(properties("engine=parallel")), pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
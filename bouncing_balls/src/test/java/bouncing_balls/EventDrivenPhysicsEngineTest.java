@@ -0,0 +1,170 @@
+package bouncing_balls;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventDrivenPhysicsEngineTest {
+
+    static double totalEnergy(BallStore balls) {
+        double energy = 0;
+        for (int i = 0; i < balls.size(); i++) {
+            energy += 0.5 * balls.mass[i] * (balls.vx[i] * balls.vx[i] + balls.vy[i] * balls.vy[i]);
+            energy += balls.mass[i] * 9.82 * balls.y[i];
+        }
+        return energy;
+    }
+
+    @Test
+    void fastBallsDoNotTunnel() {
+        BallStore balls = new BallStore(2);
+        balls.add(10, 50, 100, 0, 0.05, 1);
+        balls.add(11, 50, -100, 0, 0.05, 1);
+        PhysicsEngine engine = new EventDrivenPhysicsEngine(100, 100);
+
+        // Each ball would move 1.67 m in one step, jumping past the other
+        engine.update(balls, 1.0 / 60);
+
+        assertEquals(-100, balls.vx[0], 1e-9);
+        assertEquals(100, balls.vx[1], 1e-9);
+        assertTrue(balls.x[0] < balls.x[1], "Balls passed through each other");
+    }
+
+    @Test
+    void bouncesOffFloorAtExactTime() {
+        BallStore balls = new BallStore(1);
+        balls.add(50, 1.5, 0, -10, 0.5, 1);
+        PhysicsEngine engine = new EventDrivenPhysicsEngine(100, 100);
+
+        engine.update(balls, 0.2);
+
+        // Hits the floor when 1.5 - 10 t - 4.91 t^2 = 0.5, then rises again
+        double hit = (-10 + Math.sqrt(100 + 4 * 4.91)) / (2 * 4.91);
+        double vHit = 10 + 9.82 * hit;
+        double after = 0.2 - hit;
+        assertEquals(0.5 + vHit * after - 4.91 * after * after, balls.y[0], 1e-9);
+        assertEquals(vHit - 9.82 * after, balls.vy[0], 1e-9);
+    }
+
+    @Test
+    void gasConservesEnergyAndDoesNotOverlap() {
+        Random random = new Random(1);
+        BallStore balls = new BallStore(200);
+        for (int i = 0; i < 200; i++) {
+            // One ball per cell of a 20 x 10 grid, so that none overlap at the start
+            double x = 0.5 + (i % 20) + random.nextDouble() * 0.2;
+            double y = 0.5 + (i / 20) + random.nextDouble() * 0.2;
+            balls.add(x, y, random.nextDouble() * 40 - 20, random.nextDouble() * 40 - 20, 0.1, 1 + random.nextDouble());
+        }
+        PhysicsEngine engine = new EventDrivenPhysicsEngine(20, 10);
+        double initialEnergy = totalEnergy(balls);
+
+        for (int step = 0; step < 60; step++) {
+            engine.update(balls, 1.0 / 60);
+        }
+
+        assertEquals(initialEnergy, totalEnergy(balls), initialEnergy * 1e-9);
+        for (int i = 0; i < balls.size(); i++) {
+            for (int j = i + 1; j < balls.size(); j++) {
+                double dx = balls.x[j] - balls.x[i];
+                double dy = balls.y[j] - balls.y[i];
+                assertTrue(Math.sqrt(dx * dx + dy * dy) >= 0.2 - 1e-9, "Balls " + i + " and " + j + " overlap");
+            }
+            assertTrue(balls.x[i] >= 0.1 - 1e-9 && balls.x[i] <= 19.9 + 1e-9, "Ball " + i + " outside area");
+            assertTrue(balls.y[i] >= 0.1 - 1e-9 && balls.y[i] <= 9.9 + 1e-9, "Ball " + i + " outside area");
+        }
+    }
+
+    @Test
+    void bouncesOffSideWallUnderWindWithoutGravity() {
+        BallStore balls = new BallStore(1);
+        balls.add(98, 50, 10, 0, 0.5, 1);
+        PhysicsEngine engine = new EventDrivenPhysicsEngine(100, 100);
+        engine.getForces().setGravity(0);
+        engine.getForces().add(new ConstantField(5, 0));
+
+        engine.update(balls, 0.2);
+
+        // Hits the wall when 98 + 10 t + 2.5 t^2 = 99.5, then is pushed back towards it
+        double hit = (-10 + Math.sqrt(100 + 4 * 2.5 * 1.5)) / (2 * 2.5);
+        double vHit = 10 + 5 * hit;
+        double after = 0.2 - hit;
+        assertEquals(99.5 - vHit * after + 2.5 * after * after, balls.x[0], 1e-9);
+        assertEquals(-vHit + 5 * after, balls.vx[0], 1e-9);
+        assertEquals(50, balls.y[0]);
+    }
+
+    @Test
+    void gasWithoutGravityConservesEnergy() {
+        Random random = new Random(2);
+        BallStore balls = new BallStore(100);
+        for (int i = 0; i < 100; i++) {
+            double x = 0.5 + (i % 10) + random.nextDouble() * 0.2;
+            double y = 0.5 + (i / 10) + random.nextDouble() * 0.2;
+            balls.add(x, y, random.nextDouble() * 40 - 20, random.nextDouble() * 40 - 20, 0.1, 1 + random.nextDouble());
+        }
+        PhysicsEngine engine = new EventDrivenPhysicsEngine(10, 10);
+        engine.getForces().setGravity(0);
+        double initialEnergy = 0;
+        for (int i = 0; i < balls.size(); i++) {
+            initialEnergy += 0.5 * balls.mass[i] * (balls.vx[i] * balls.vx[i] + balls.vy[i] * balls.vy[i]);
+        }
+
+        for (int step = 0; step < 60; step++) {
+            engine.update(balls, 1.0 / 60);
+        }
+
+        double energy = 0;
+        for (int i = 0; i < balls.size(); i++) {
+            energy += 0.5 * balls.mass[i] * (balls.vx[i] * balls.vx[i] + balls.vy[i] * balls.vy[i]);
+            assertTrue(balls.x[i] >= 0.1 - 1e-9 && balls.x[i] <= 9.9 + 1e-9, "Ball " + i + " outside area");
+            assertTrue(balls.y[i] >= 0.1 - 1e-9 && balls.y[i] <= 9.9 + 1e-9, "Ball " + i + " outside area");
+        }
+        assertEquals(initialEnergy, energy, initialEnergy * 1e-9);
+    }
+
+    @Test
+    void recordsMetricsOfEveryUpdate() {
+        BallStore balls = new BallStore(3);
+        balls.add(10, 50, 100, 0, 0.05, 1);
+        balls.add(11, 50, -100, 0, 0.05, 1);
+        balls.add(99, 50, 100, 0, 0.5, 1);
+        EventDrivenPhysicsEngine engine = new EventDrivenPhysicsEngine(100, 100);
+        EngineMetrics metrics = new EngineMetrics();
+        engine.setMetrics(metrics);
+
+        engine.update(balls, 1.0 / 60);
+        engine.update(balls, 1.0 / 60);
+
+        assertEquals(2, metrics.getSteps());
+        assertEquals(2, metrics.phase(EngineMetrics.Phase.COLLIDE).getCount());
+        assertEquals(1, metrics.candidatePairs.getMax(), "Only the approaching pair is a candidate");
+        assertEquals(1, metrics.contacts.getMax());
+        assertEquals(1, metrics.wallHits.getMax());
+        assertTrue(metrics.getMeanStepNanos() > 0);
+
+        // A fallback to a fixed step is still one update
+        engine.maxEventsPerBall = 0;
+        balls.set(2, 99, 50, 100, 0, 0.5, 1);
+        engine.update(balls, 1.0 / 60);
+        assertTrue(balls.vx[2] < 0, "The fixed step bounces off the wall");
+        assertEquals(3, metrics.getSteps());
+    }
+
+    @Test
+    void scenarioRejectsFieldsThatVaryPerBall() {
+        Properties properties = new Properties();
+        properties.setProperty("engine", "event");
+        properties.setProperty("gravity", "0");
+        properties.setProperty("wind", "1");
+        Scenario.fromProperties(properties).createEngine();
+        properties.setProperty("drag", "1");
+        assertThrows(IllegalArgumentException.class, () -> Scenario.fromProperties(properties).createEngine());
+        properties.remove("drag");
+        properties.setProperty("attraction", "0.001");
+        assertThrows(IllegalArgumentException.class, () -> Scenario.fromProperties(properties).createEngine());
+    }
+}
@@ -0,0 +1,104 @@
+package bouncing_balls;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ForcePipelineTest {
+
+    @Test
+    void constantFieldsAreAddedUp() {
+        ForcePipeline forces = new ForcePipeline();
+        assertTrue(forces.isConstant());
+        assertEquals(PhysicsEngine.GRAVITY, forces.getConstantY());
+
+        ConstantField wind = new ConstantField(2, 0.5);
+        forces.add(wind);
+        forces.setGravity(-1);
+        assertTrue(forces.isConstant());
+        assertEquals(2, forces.getConstantX());
+        assertEquals(-0.5, forces.getConstantY());
+
+        forces.add(new DragField(1));
+        assertFalse(forces.isConstant());
+        forces.remove(wind);
+        assertEquals(0, forces.getConstantX());
+        forces.clear();
+        assertTrue(forces.isConstant());
+        assertEquals(-1, forces.getConstantY());
+    }
+
+    @Test
+    void fusedPassMatchesFieldsOneByOne() {
+        Random random = new Random(1);
+        int count = 3 * ForcePipeline.BLOCK + 17;
+        BallStore balls = new BallStore(count);
+        for (int i = 0; i < count; i++) {
+            balls.add(random.nextDouble() * 4, random.nextDouble() * 4, random.nextGaussian(), random.nextGaussian(), 0.01, 1);
+            balls.asleep[i] = i % 7 == 0;
+        }
+        BallStore expected = new BallStore(count);
+        for (int i = 0; i < count; i++) {
+            expected.add(balls.x[i], balls.y[i], balls.vx[i], balls.vy[i], 0.01, 1);
+        }
+
+        ForceField drag = new DragField(0.3);
+        ForceField attractor = new AttractorField(2, 2, 5, 0.1);
+        ForcePipeline forces = new ForcePipeline();
+        forces.add(new ConstantField(1, 0));
+        forces.add(drag);
+        forces.add(attractor);
+        forces.apply(balls, 0, count, 0.01);
+
+        double[] ax = new double[count];
+        double[] ay = new double[count];
+        drag.accumulate(expected, 0, count, ax, ay);
+        attractor.accumulate(expected, 0, count, ax, ay);
+        for (int i = 0; i < count; i++) {
+            if (i % 7 == 0) {
+                assertEquals(expected.vx[i], balls.vx[i], "Sleeping balls are left alone");
+                continue;
+            }
+            assertEquals(expected.vx[i] + (1 + ax[i]) * 0.01, balls.vx[i], 1e-12);
+            assertEquals(expected.vy[i] + (PhysicsEngine.GRAVITY + ay[i]) * 0.01, balls.vy[i], 1e-12);
+        }
+    }
+
+    @Test
+    void attractorPullsTowardsItsPoint() {
+        BallStore balls = new BallStore(1);
+        balls.add(3, 1, 0, 0, 0.1, 1);
+        double[] ax = new double[1];
+        double[] ay = new double[1];
+        new AttractorField(1, 1, 8, 0).accumulate(balls, 0, 1, ax, ay);
+        assertEquals(-2, ax[0], 1e-12);
+        assertEquals(0, ay[0], 1e-12);
+    }
+
+    @Test
+    void engineAppliesFields() {
+        BallStore balls = new BallStore(1);
+        balls.add(5, 5, 2, 0, 0.1, 1);
+        PhysicsEngine engine = new PhysicsEngine(10, 10);
+        engine.setCollisionStrategy(new ProjectionBallCollisionStrategy());
+        engine.getForces().setGravity(0);
+        engine.getForces().add(new DragField(1));
+
+        for (int step = 0; step < 100; step++) {
+            engine.update(balls, 0.01);
+        }
+        assertEquals(2 * Math.pow(0.99, 100), balls.vx[0], 1e-12);
+        assertEquals(0, balls.vy[0]);
+    }
+
+    @Test
+    void eventDrivenEngineOnlyTakesGravity() {
+        BallStore balls = new BallStore(1);
+        balls.add(5, 5, 2, 0, 0.1, 1);
+        PhysicsEngine engine = new EventDrivenPhysicsEngine(10, 10);
+        engine.getForces().add(new DragField(1));
+        assertThrows(IllegalArgumentException.class, () -> engine.update(balls, 0.01));
+    }
+}
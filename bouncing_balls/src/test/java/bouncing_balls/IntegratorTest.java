@@ -0,0 +1,164 @@
+package bouncing_balls;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntegratorTest {
+
+    private static final double DT = 1.0 / 30;
+
+    private static PhysicsEngine engine(Integrator integrator) {
+        PhysicsEngine engine = new PhysicsEngine(100, 100);
+        engine.setCollisionStrategy(new ProjectionBallCollisionStrategy());
+        engine.setIntegrator(integrator);
+        return engine;
+    }
+
+    private static BallStore thrownBall() {
+        BallStore balls = new BallStore(1);
+        balls.add(50, 50, 3, 4, 0.1, 1);
+        return balls;
+    }
+
+    @Test
+    void verletFollowsTheParabola() {
+        BallStore balls = thrownBall();
+        PhysicsEngine engine = engine(new VelocityVerletIntegrator());
+        for (int step = 0; step < 30; step++) {
+            engine.update(balls, DT);
+        }
+        assertEquals(53, balls.x[0], 1e-12);
+        assertEquals(54 + PhysicsEngine.GRAVITY / 2, balls.y[0], 1e-12);
+        assertEquals(4 + PhysicsEngine.GRAVITY, balls.vy[0], 1e-12);
+    }
+
+    @Test
+    void semiImplicitEulerIsOffByHalfAStep() {
+        BallStore balls = thrownBall();
+        PhysicsEngine engine = engine(new SemiImplicitEulerIntegrator());
+        for (int step = 0; step < 30; step++) {
+            engine.update(balls, DT);
+        }
+        assertEquals(54 + PhysicsEngine.GRAVITY / 2 + PhysicsEngine.GRAVITY * DT / 2, balls.y[0], 1e-12);
+        assertEquals(4 + PhysicsEngine.GRAVITY, balls.vy[0], 1e-12);
+    }
+
+    @Test
+    void physicalObjectsUseTheIntegrator() {
+        Ball[] balls = {new Ball(50, 50, 3, 4, 0.1, 1)};
+        PhysicsEngine engine = engine(new VelocityVerletIntegrator());
+        for (int step = 0; step < 30; step++) {
+            engine.update(balls, DT);
+        }
+        assertEquals(54 + PhysicsEngine.GRAVITY / 2, balls[0].getY(), 1e-12);
+    }
+
+    @Test
+    void verletPreparesTheFieldsOncePerStep() {
+        int[] prepared = {0};
+        ForceField counting = new ForceField() {
+            @Override
+            public void prepare(BallStore balls) {
+                prepared[0]++;
+            }
+
+            @Override
+            public void accumulate(BallStore balls, int from, int to, double[] ax, double[] ay) {
+            }
+        };
+        BallStore balls = thrownBall();
+        PhysicsEngine engine = engine(new VelocityVerletIntegrator());
+        engine.getForces().add(counting);
+        for (int step = 0; step < 10; step++) {
+            engine.update(balls, DT);
+        }
+        // The first step evaluates the fields before and after the balls move
+        assertEquals(11, prepared[0]);
+        engine.getForces().add(new DragField(0.1));
+        engine.update(balls, DT);
+        assertEquals(13, prepared[0]);
+        // Moving a ball from outside the engine makes the recorded accelerations stale
+        balls.set(0, 50, 50, 3, 4, 0.1, 1);
+        engine.update(balls, DT);
+        assertEquals(15, prepared[0]);
+        balls.get(0).setX(40);
+        engine.update(balls, DT);
+        assertEquals(17, prepared[0]);
+        engine.update(balls, DT);
+        assertEquals(18, prepared[0]);
+    }
+
+    /** Largest relative change of the energy of a ball orbiting an attractor, over ten orbits */
+    private static double orbitEnergyError(Integrator integrator) {
+        double strength = 10;
+        double radius = 2;
+        BallStore balls = new BallStore(1);
+        double speed = Math.sqrt(strength / radius);
+        balls.add(50 + radius, 50, 0, speed, 0.1, 1);
+        PhysicsEngine engine = engine(integrator);
+        engine.getForces().setGravity(0);
+        engine.getForces().add(new AttractorField(50, 50, strength, 0));
+
+        double initial = speed * speed / 2 - strength / radius;
+        double period = 2 * Math.PI * radius / speed;
+        double maxError = 0;
+        for (int step = 0; step < 10 * period / DT; step++) {
+            engine.update(balls, DT);
+            double r = Math.hypot(balls.x[0] - 50, balls.y[0] - 50);
+            double energy = (balls.vx[0] * balls.vx[0] + balls.vy[0] * balls.vy[0]) / 2 - strength / r;
+            maxError = Math.max(maxError, Math.abs(energy / initial - 1));
+        }
+        return maxError;
+    }
+
+    @Test
+    void verletKeepsTheOrbitEnergyCloser() {
+        double euler = orbitEnergyError(new SemiImplicitEulerIntegrator());
+        double verlet = orbitEnergyError(new VelocityVerletIntegrator());
+        assertTrue(verlet < 1e-3, "Verlet energy error " + verlet);
+        assertTrue(verlet * 10 < euler, "Verlet " + verlet + ", Euler " + euler);
+    }
+
+    @Test
+    void parallelEngineMatchesSerial() {
+        BallStore serial = new BallStore(10000);
+        BallStore parallel = new BallStore(10000);
+        for (int i = 0; i < 10000; i++) {
+            double vx = Math.sin(i) * 0.1;
+            double vy = Math.cos(i) * 0.1;
+            serial.add(1 + (i % 100) * 0.5, 10 + (i / 100) * 0.5, vx, vy, 0.01, 1);
+            parallel.add(1 + (i % 100) * 0.5, 10 + (i / 100) * 0.5, vx, vy, 0.01, 1);
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            PhysicsEngine serialEngine = engine(new VelocityVerletIntegrator());
+            PhysicsEngine parallelEngine = new ParallelPhysicsEngine(100, 100, pool);
+            parallelEngine.setCollisionStrategy(new ProjectionBallCollisionStrategy());
+            parallelEngine.setIntegrator(new VelocityVerletIntegrator());
+            for (PhysicsEngine engine : new PhysicsEngine[] {serialEngine, parallelEngine}) {
+                engine.getForces().add(new DragField(0.5));
+            }
+            for (int step = 0; step < 5; step++) {
+                serialEngine.update(serial, DT);
+                parallelEngine.update(parallel, DT);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertArrayEquals(serial.y, parallel.y);
+        assertArrayEquals(serial.vx, parallel.vx);
+    }
+
+    @Test
+    void scenarioChoosesTheIntegrator() {
+        Properties properties = new Properties();
+        properties.setProperty("integrator", "verlet");
+        assertTrue(Scenario.fromProperties(properties).createEngine().getIntegrator() instanceof VelocityVerletIntegrator);
+        properties.setProperty("integrator", "rk4");
+        assertThrows(IllegalArgumentException.class, () -> Scenario.fromProperties(properties).createEngine());
+    }
+}
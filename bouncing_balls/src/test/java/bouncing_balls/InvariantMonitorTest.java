@@ -0,0 +1,95 @@
+package bouncing_balls;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InvariantMonitorTest {
+
+    @Test
+    void sumsEnergyAndMomentum() {
+        BallStore balls = new BallStore(2);
+        balls.add(1, 2, 3, 4, 0.1, 2);
+        balls.add(0, 1, -1, 0, 0.1, 1);
+        InvariantMonitor monitor = new InvariantMonitor();
+        monitor.check(balls, 0);
+
+        assertEquals(0.5 * 2 * 25 + 0.5 * 1, monitor.getKineticEnergy(), 1e-12);
+        assertEquals(9.82 * (2 * 2 + 1 * 1), monitor.getPotentialEnergy(), 1e-12);
+        assertEquals(5, monitor.getMomentumX(), 1e-12);
+        assertEquals(8, monitor.getMomentumY(), 1e-12);
+        assertEquals(0, monitor.getEnergyDrift());
+    }
+
+    @Test
+    void parallelSumsMatchSerialSums() {
+        Random random = new Random(1);
+        BallStore balls = new BallStore(100_000);
+        for (int i = 0; i < 100_000; i++) {
+            balls.add(random.nextDouble(), random.nextDouble(), random.nextGaussian(), random.nextGaussian(), 0.001, 1 + random.nextDouble());
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        ForkJoinPool single = new ForkJoinPool(1);
+        try {
+            InvariantMonitor parallel = new InvariantMonitor(pool);
+            InvariantMonitor serial = new InvariantMonitor(single);
+            parallel.check(balls, 0);
+            serial.check(balls, 0);
+            assertEquals(serial.getEnergy(), parallel.getEnergy(), 1e-9 * serial.getEnergy());
+            assertEquals(serial.getMomentumX(), parallel.getMomentumX(), 1e-6);
+            assertEquals(serial.getMomentumY(), parallel.getMomentumY(), 1e-6);
+
+            double energy = parallel.getEnergy();
+            parallel.check(balls, 1);
+            assertEquals(energy, parallel.getEnergy(), "Same sums every time");
+        } finally {
+            pool.shutdown();
+            single.shutdown();
+        }
+    }
+
+    @Test
+    void alertsOnceWhenDriftGoesOverThreshold() {
+        BallStore balls = new BallStore(1);
+        balls.add(0, 0, 1, 0, 0.1, 1);
+        InvariantMonitor monitor = new InvariantMonitor();
+        monitor.setEnergyThreshold(0.1);
+        List<String> alerts = new ArrayList<>();
+        monitor.setAlertHandler((invariant, time, drift) -> alerts.add(invariant + "@" + time));
+
+        monitor.check(balls, 0);
+        balls.vx[0] = 1.1; // 21% more energy
+        monitor.check(balls, 1);
+        monitor.check(balls, 2);
+        balls.vx[0] = 1;
+        monitor.check(balls, 3);
+        balls.vx[0] = 0.5;
+        monitor.check(balls, 4);
+
+        assertEquals(List.of("energy@1.0", "energy@4.0"), alerts);
+        assertEquals(0.75, monitor.getMaxEnergyDrift(), 1e-12);
+        assertEquals(0.5, monitor.getMomentumDrift(), 1e-12);
+    }
+
+    @Test
+    void checksDoNotAllocate() {
+        BallStore balls = new BallStore(1000);
+        for (int i = 0; i < 1000; i++) {
+            balls.add(i, i, 1, 1, 0.1, 1);
+        }
+        InvariantMonitor monitor = new InvariantMonitor();
+        for (int i = 0; i < 1000; i++) {
+            monitor.check(balls, i);
+        }
+        long before = EngineMetrics.allocatedBytes();
+        for (int i = 0; i < 1000; i++) {
+            monitor.check(balls, i);
+        }
+        assertTrue(EngineMetrics.allocatedBytes() - before < 1024);
+    }
+}
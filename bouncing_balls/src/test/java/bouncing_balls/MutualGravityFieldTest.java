@@ -0,0 +1,169 @@
+package bouncing_balls;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MutualGravityFieldTest {
+
+    private static final double G = 1e-3;
+    private static final double SOFTENING = 0.01;
+
+    private static BallStore randomBalls(int count, long seed) {
+        Random random = new Random(seed);
+        BallStore balls = new BallStore(count);
+        for (int i = 0; i < count; i++) {
+            balls.add(random.nextDouble() * 8, random.nextDouble() * 6, 0, 0, 0.01, 0.5 + random.nextDouble());
+        }
+        return balls;
+    }
+
+    /** The exact O(n^2) sum */
+    private static double[][] direct(BallStore balls) {
+        int n = balls.size();
+        double[][] a = new double[2][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (i == j) {
+                    continue;
+                }
+                double dx = balls.x[j] - balls.x[i];
+                double dy = balls.y[j] - balls.y[i];
+                double softened = dx * dx + dy * dy + SOFTENING * SOFTENING;
+                double factor = G * balls.mass[j] / (softened * Math.sqrt(softened));
+                a[0][i] += factor * dx;
+                a[1][i] += factor * dy;
+            }
+        }
+        return a;
+    }
+
+    private static double[][] tree(MutualGravityField field, BallStore balls) {
+        double[][] a = new double[2][balls.size()];
+        field.prepare(balls);
+        field.accumulate(balls, 0, balls.size(), a[0], a[1]);
+        return a;
+    }
+
+    @Test
+    void zeroOpeningAngleGivesTheExactSum() {
+        BallStore balls = randomBalls(500, 1);
+        double[][] expected = direct(balls);
+        double[][] actual = tree(new MutualGravityField(G, 0, SOFTENING), balls);
+        for (int i = 0; i < balls.size(); i++) {
+            assertEquals(expected[0][i], actual[0][i], 1e-9 * Math.abs(expected[0][i]) + 1e-15);
+            assertEquals(expected[1][i], actual[1][i], 1e-9 * Math.abs(expected[1][i]) + 1e-15);
+        }
+    }
+
+    @Test
+    void openingAngleKeepsTheErrorSmall() {
+        BallStore balls = randomBalls(4000, 2);
+        double[][] expected = direct(balls);
+        MutualGravityField field = new MutualGravityField(G, 0.5, SOFTENING);
+        double[][] actual = tree(field, balls);
+        double error = 0;
+        double norm = 0;
+        for (int i = 0; i < balls.size(); i++) {
+            error += Math.hypot(actual[0][i] - expected[0][i], actual[1][i] - expected[1][i]);
+            norm += Math.hypot(expected[0][i], expected[1][i]);
+        }
+        assertTrue(error / norm < 0.01, "Mean relative error " + error / norm);
+        assertTrue(field.getNodeCount() < balls.size(), "Nodes: " + field.getNodeCount());
+    }
+
+    @Test
+    void twoBallsPullEachOtherEqually() {
+        BallStore balls = new BallStore(2);
+        balls.add(1, 1, 0, 0, 0.1, 2);
+        balls.add(4, 5, 0, 0, 0.1, 3);
+        double[][] a = tree(new MutualGravityField(G, 0.5, 0), balls);
+        assertEquals(G * 3 / 25 * 3 / 5, a[0][0], 1e-15);
+        assertEquals(G * 3 / 25 * 4 / 5, a[1][0], 1e-15);
+        assertEquals(0, 2 * a[0][0] + 3 * a[0][1], 1e-15);
+        assertEquals(0, 2 * a[1][0] + 3 * a[1][1], 1e-15);
+    }
+
+    @Test
+    void resultDoesNotDependOnTheNumberOfThreads() {
+        BallStore balls = randomBalls(40000, 3);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        ForkJoinPool single = new ForkJoinPool(1);
+        try {
+            double[][] parallel = tree(new MutualGravityField(G, 0.5, SOFTENING, pool), balls);
+            double[][] serial = tree(new MutualGravityField(G, 0.5, SOFTENING, single), balls);
+            assertArrayEquals(serial[0], parallel[0]);
+            assertArrayEquals(serial[1], parallel[1]);
+        } finally {
+            pool.shutdown();
+            single.shutdown();
+        }
+    }
+
+    @Test
+    void deepClustersGrowTheTree() {
+        // Tight groups of a few more balls than fit in a leaf need many levels each, more nodes than balls
+        BallStore balls = new BallStore(900);
+        Random random = new Random(4);
+        for (int group = 0; group < 100; group++) {
+            double x = random.nextDouble() * 8;
+            double y = random.nextDouble() * 6;
+            for (int i = 0; i < MutualGravityField.LEAF_SIZE + 1; i++) {
+                balls.add(x + random.nextDouble() * 1e-4, y + random.nextDouble() * 1e-4, 0, 0, 0.01, 1);
+            }
+        }
+        MutualGravityField field = new MutualGravityField(G, 0, SOFTENING);
+        double[][] actual = tree(field, balls);
+        assertTrue(field.getNodeCount() > balls.size());
+        double[][] expected = direct(balls);
+        for (int i = 0; i < balls.size(); i++) {
+            assertEquals(expected[0][i], actual[0][i], 1e-9 * Math.abs(expected[0][i]) + 1e-15);
+            assertEquals(expected[1][i], actual[1][i], 1e-9 * Math.abs(expected[1][i]) + 1e-15);
+        }
+    }
+
+    @Test
+    void scenarioAddsTheField() {
+        Properties properties = new Properties();
+        properties.setProperty("attraction", "0.001");
+        properties.setProperty("gravity", "0");
+        properties.setProperty("balls", "100");
+        Scenario scenario = Scenario.fromProperties(properties);
+        PhysicsEngine engine = scenario.createEngine();
+        assertFalse(engine.getForces().isConstant());
+
+        BallStore balls = scenario.createBalls();
+        for (int i = 0; i < balls.size(); i++) {
+            balls.vx[i] = 0;
+            balls.vy[i] = 0;
+        }
+        engine.update(balls, 0.01);
+        double[][] expected = direct(balls);
+        assertTrue(balls.vx[0] != 0 && Math.signum(balls.vx[0]) == Math.signum(expected[0][0]));
+    }
+
+    @Test
+    void largeOpeningAngleNeverPullsABallTowardsItself() {
+        // Two distant clusters, each a tight group with one light ball in the far corner of their
+        // node: seen from that ball the node is narrower than the distance to its centre of mass
+        Random random = new Random(5);
+        BallStore balls = new BallStore(26);
+        for (double cx : new double[] {0, 8}) {
+            for (int i = 0; i < 12; i++) {
+                balls.add(cx + random.nextDouble() * 0.02, random.nextDouble() * 0.02, 0, 0, 0.001, 1);
+            }
+            balls.add(cx + 1.05, 1.05, 0, 0, 0.001, 1.2);
+        }
+        double[][] exact = tree(new MutualGravityField(G, 0, SOFTENING), balls);
+        double[][] actual = tree(new MutualGravityField(G, 1, SOFTENING), balls);
+        for (int i : new int[] {12, 25}) {
+            double error = Math.hypot(actual[0][i] - exact[0][i], actual[1][i] - exact[1][i]);
+            double relative = error / Math.hypot(exact[0][i], exact[1][i]);
+            assertTrue(relative < 0.05, "Relative error " + relative + " of ball " + i);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package bouncing_balls;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelPhysicsEngineTest {
+
+    static BallStore randomScene(int count, long seed) {
+        Random random = new Random(seed);
+        BallStore store = new BallStore(count);
+        for (int i = 0; i < count; i++) {
+            double r = 0.02 + random.nextDouble() * 0.03;
+            store.add(r + random.nextDouble() * (20 - 2 * r), r + random.nextDouble() * (20 - 2 * r),
+                    random.nextDouble() * 4 - 2, random.nextDouble() * 4 - 2, r, r * r);
+        }
+        return store;
+    }
+
+    static BallStore simulate(int threads) {
+        BallStore store = randomScene(20000, 1);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            PhysicsEngine engine = new ParallelPhysicsEngine(20, 20, pool);
+            engine.setCollisionStrategy(new ProjectionBallCollisionStrategy());
+            for (int step = 0; step < 20; step++) {
+                engine.update(store, 0.01);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return store;
+    }
+
+    @Test
+    void resultDoesNotDependOnThreadCount() {
+        BallStore single = simulate(1);
+        for (int threads : new int[]{2, 4}) {
+            BallStore parallel = simulate(threads);
+            for (int i = 0; i < single.size(); i++) {
+                assertEquals(single.x[i], parallel.x[i], "x differs for ball " + i + " with " + threads + " threads");
+                assertEquals(single.y[i], parallel.y[i], "y differs for ball " + i + " with " + threads + " threads");
+                assertEquals(single.vx[i], parallel.vx[i], "vx differs for ball " + i + " with " + threads + " threads");
+                assertEquals(single.vy[i], parallel.vy[i], "vy differs for ball " + i + " with " + threads + " threads");
+            }
+        }
+    }
+
+    @Test
+    void handlesCollision() {
+        BallStore store = new BallStore(2);
+        store.add(10, 10, 1, 0, 1, 1);
+        store.add(11.5, 10, -1, 0, 1, 1);
+        PhysicsEngine engine = new ParallelPhysicsEngine(100, 100);
+        engine.setCollisionStrategy(new ProjectionBallCollisionStrategy());
+
+        engine.update(store, 0.01);
+
+        assertEquals(-1, store.vx[0], 1e-9);
+        assertEquals(1, store.vx[1], 1e-9);
+        assertEquals(2, store.x[1] - store.x[0], 1e-9);
+    }
+
+    @Test
+    void closeOnlyShutsDownItsOwnPool() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        new ParallelPhysicsEngine(10, 10, pool).close();
+        assertFalse(pool.isShutdown());
+        pool.shutdown();
+
+        ParallelPhysicsEngine engine = new ParallelPhysicsEngine(10, 10, 2);
+        engine.close();
+        assertTrue(engine.getPool().isShutdown());
+    }
+}
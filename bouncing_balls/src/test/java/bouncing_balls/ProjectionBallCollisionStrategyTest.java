@@ -0,0 +1,127 @@
+package bouncing_balls;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProjectionBallCollisionStrategyTest {
+
+    @Test
+    void handleCollision() {
+        ProjectionBallCollisionStrategy strategy = new ProjectionBallCollisionStrategy();
+        Ball ball1 = new Ball(0, 0, 1, 0, 1, 1);
+        Ball ball2 = new Ball(1.5, 0, -1, 0, 1, 1);
+
+        strategy.handleCollision(ball1, ball2);
+
+        // Equal masses in a head-on collision swap velocities
+        assertEquals(-1, ball1.getVX(), 1e-9);
+        assertEquals(1, ball2.getVX(), 1e-9);
+        assertEquals(2, ball2.getX() - ball1.getX(), 1e-9);
+    }
+
+    @Test
+    void noCollisionWhenApart() {
+        ProjectionBallCollisionStrategy strategy = new ProjectionBallCollisionStrategy();
+        Ball ball1 = new Ball(0, 0, 1, 0, 1, 1);
+        Ball ball2 = new Ball(2.5, 0, -1, 0, 1, 1);
+
+        strategy.handleCollision(ball1, ball2);
+
+        assertEquals(1, ball1.getVX());
+        assertEquals(-1, ball2.getVX());
+        assertEquals(0, ball1.getX());
+    }
+
+    @Test
+    void matchesBallCollisionStrategy() {
+        Random random = new Random(1);
+        BallCollisionStrategy polar = new BallCollisionStrategy();
+        ProjectionBallCollisionStrategy projection = new ProjectionBallCollisionStrategy();
+
+        for (int k = 0; k < 1000; k++) {
+            double x = random.nextDouble() * 2 - 1;
+            double y = random.nextDouble() * 2 - 1;
+            double vx1 = random.nextDouble() * 4 - 2, vy1 = random.nextDouble() * 4 - 2;
+            double vx2 = random.nextDouble() * 4 - 2, vy2 = random.nextDouble() * 4 - 2;
+            double m1 = 0.5 + random.nextDouble(), m2 = 0.5 + random.nextDouble();
+
+            Ball expected1 = new Ball(0, 0, vx1, vy1, 0.6, m1);
+            Ball expected2 = new Ball(x, y, vx2, vy2, 0.5, m2);
+            Ball actual1 = new Ball(0, 0, vx1, vy1, 0.6, m1);
+            Ball actual2 = new Ball(x, y, vx2, vy2, 0.5, m2);
+
+            polar.handleCollision(expected1, expected2);
+            projection.handleCollision(actual1, actual2);
+
+            assertEquals(expected1.getVX(), actual1.getVX(), 1e-9);
+            assertEquals(expected1.getVY(), actual1.getVY(), 1e-9);
+            assertEquals(expected2.getVX(), actual2.getVX(), 1e-9);
+            assertEquals(expected2.getVY(), actual2.getVY(), 1e-9);
+            assertEquals(expected1.getX(), actual1.getX(), 1e-9);
+            assertEquals(expected1.getY(), actual1.getY(), 1e-9);
+            assertEquals(expected2.getX(), actual2.getX(), 1e-9);
+            assertEquals(expected2.getY(), actual2.getY(), 1e-9);
+        }
+    }
+
+    @Test
+    void batchMatchesPairwiseForSingleContact() {
+        assertBatchMatchesPairwise(new ProjectionBallCollisionStrategy(), new ProjectionBallCollisionStrategy());
+        assertBatchMatchesPairwise(new BallCollisionStrategy(), new BallCollisionStrategy());
+    }
+
+    private static <S extends PhysicalObjectCollisionStrategy & BatchCollisionStrategy> void assertBatchMatchesPairwise(
+            S pairwise, S batch) {
+        Random random = new Random(2);
+        for (int trial = 0; trial < 100; trial++) {
+            double x2 = random.nextDouble() * 1.5;
+            double y2 = random.nextDouble() * 1.5;
+            double vx1 = random.nextGaussian(), vy1 = random.nextGaussian();
+            double vx2 = random.nextGaussian(), vy2 = random.nextGaussian();
+            double m2 = 0.5 + random.nextDouble();
+            Ball ball1 = new Ball(0, 0, vx1, vy1, 1, 1);
+            Ball ball2 = new Ball(x2, y2, vx2, vy2, 1, m2);
+            BallStore store = new BallStore(2);
+            store.add(0, 0, vx1, vy1, 1, 1);
+            store.add(x2, y2, vx2, vy2, 1, m2);
+            ContactList contacts = new ContactList();
+
+            pairwise.handleCollision(ball1, ball2);
+            assertEquals(contacts.addIfTouching(store, 0, 1), contacts.size() == 1);
+            batch.resolveContacts(store, contacts);
+
+            assertEquals(ball1.getVX(), store.vx[0], 1e-12);
+            assertEquals(ball1.getVY(), store.vy[0], 1e-12);
+            assertEquals(ball2.getVX(), store.vx[1], 1e-12);
+            assertEquals(ball2.getY(), store.y[1], 1e-12);
+        }
+    }
+
+    @Test
+    void engineResolvesContactsInBatch() {
+        int[] batches = new int[1];
+        class CountingStrategy extends ProjectionBallCollisionStrategy {
+            @Override
+            public void resolveContacts(BallStore balls, ContactList contacts) {
+                batches[0]++;
+                assertEquals(2, contacts.size());
+                super.resolveContacts(balls, contacts);
+            }
+        }
+        BallStore balls = new BallStore(3);
+        balls.add(1, 1, 1, 0, 0.2, 1);
+        balls.add(1.3, 1, 0, 0, 0.2, 1);
+        balls.add(1.6, 1, -1, 0, 0.2, 1);
+        PhysicsEngine engine = new PhysicsEngine(5, 5);
+        engine.setCollisionStrategy(new CountingStrategy());
+
+        engine.update(balls, 0.001);
+
+        assertEquals(1, batches[0]);
+        double momentum = balls.vx[0] + balls.vx[1] + balls.vx[2];
+        assertEquals(0, momentum, 1e-12);
+    }
+}
@@ -0,0 +1,42 @@
+package bouncing_balls;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScenarioTest {
+
+    @Test
+    void createModelFromProperties() {
+        Properties properties = new Properties();
+        properties.setProperty("balls", "500");
+        properties.setProperty("width", "4");
+        properties.setProperty("height", "3");
+        properties.setProperty("distribution", "clustered");
+        properties.setProperty("engine", "parallel");
+
+        Model model = Scenario.fromProperties(properties).createModel();
+
+        assertEquals(500, model.balls.size());
+        assertInstanceOf(ParallelPhysicsEngine.class, model.physicsEngine);
+        for (int i = 0; i < model.balls.size(); i++) {
+            double r = model.balls.radius[i];
+            assertTrue(model.balls.x[i] >= r && model.balls.x[i] <= 4 - r, "Ball " + i + " outside area");
+            assertTrue(model.balls.y[i] >= r && model.balls.y[i] <= 3 - r, "Ball " + i + " outside area");
+        }
+        model.physicsEngine.close();
+        assertTrue(((ParallelPhysicsEngine) model.physicsEngine).getPool().isShutdown());
+    }
+
+    @Test
+    void rejectsUnknownValues() {
+        Properties properties = new Properties();
+        properties.setProperty("broadPhase", "octree");
+        assertThrows(IllegalArgumentException.class, () -> Scenario.fromProperties(properties).createModel());
+
+        properties.setProperty("balls", "many");
+        assertThrows(IllegalArgumentException.class, () -> Scenario.fromProperties(properties));
+    }
+}
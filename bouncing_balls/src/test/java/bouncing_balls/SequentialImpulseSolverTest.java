@@ -0,0 +1,142 @@
+package bouncing_balls;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SequentialImpulseSolverTest {
+
+    @Test
+    void singleContactBouncesElastically() {
+        BallStore expected = new BallStore(2);
+        expected.add(1, 1, 2, 0.5, 0.3, 1);
+        expected.add(1.5, 1.2, -1, 0, 0.3, 3);
+        BallStore actual = new BallStore(2);
+        actual.add(1, 1, 2, 0.5, 0.3, 1);
+        actual.add(1.5, 1.2, -1, 0, 0.3, 3);
+
+        ContactList contacts = new ContactList();
+        contacts.addIfTouching(expected, 0, 1);
+        ProjectionBallCollisionStrategy.resolveElastic(expected, contacts);
+        SequentialImpulseSolver solver = new SequentialImpulseSolver(10, 10, 5);
+        solver.resolveContacts(actual, contacts);
+
+        for (int i = 0; i < 2; i++) {
+            assertEquals(expected.vx[i], actual.vx[i], 1e-12);
+            assertEquals(expected.vy[i], actual.vy[i], 1e-12);
+        }
+    }
+
+    @Test
+    void impulsesConserveMomentum() {
+        Random random = new Random(1);
+        BallStore balls = new BallStore(200);
+        for (int i = 0; i < 200; i++) {
+            balls.add(5 + random.nextDouble(), 5 + random.nextDouble(), random.nextGaussian(), random.nextGaussian(),
+                    0.05, 0.5 + random.nextDouble());
+        }
+        ContactList contacts = new ContactList();
+        for (int i = 0; i < 200; i++) {
+            for (int j = i + 1; j < 200; j++) {
+                contacts.addIfTouching(balls, i, j);
+            }
+        }
+        assertTrue(contacts.size() > 100);
+        double[] before = momentum(balls);
+        new SequentialImpulseSolver(10, 10, 8).resolveContacts(balls, contacts);
+        double[] after = momentum(balls);
+        assertEquals(before[0], after[0], 1e-12);
+        assertEquals(before[1], after[1], 1e-12);
+    }
+
+    private static double[] momentum(BallStore balls) {
+        double[] p = new double[2];
+        for (int i = 0; i < balls.size(); i++) {
+            p[0] += balls.mass[i] * balls.vx[i];
+            p[1] += balls.mass[i] * balls.vy[i];
+        }
+        return p;
+    }
+
+    /** Kinetic energy of a column of balls in a shaft one ball wide, after two seconds */
+    private static double columnEnergy(boolean warmStarting) {
+        BallStore balls = new BallStore(10);
+        for (int i = 0; i < 10; i++) {
+            balls.add(0.1, 0.1 + i * 0.2, 0, 0, 0.1, 1);
+        }
+        SequentialImpulseSolver solver = new SequentialImpulseSolver(0.2, 5, 10);
+        solver.setRestingSpeed(3 * -PhysicsEngine.GRAVITY / 120);
+        solver.setWarmStarting(warmStarting);
+        PhysicsEngine engine = new PhysicsEngine(0.2, 5);
+        engine.setCollisionStrategy(solver);
+        for (int step = 0; step < 240; step++) {
+            engine.update(balls, 1.0 / 120);
+        }
+        double energy = 0;
+        for (int i = 0; i < balls.size(); i++) {
+            energy += balls.mass[i] * (balls.vx[i] * balls.vx[i] + balls.vy[i] * balls.vy[i]) / 2;
+            assertTrue(balls.y[i] > 0.0999 + i * 0.19, "Ball " + i + " sank to " + balls.y[i]);
+        }
+        return energy;
+    }
+
+    @Test
+    void warmStartedStackComesToRest() {
+        double warm = columnEnergy(true);
+        double cold = columnEnergy(false);
+        assertTrue(warm < 1e-12, "Kinetic energy " + warm);
+        assertTrue(cold > 1000 * warm, "Kinetic energy without warm starting " + cold);
+    }
+
+    @Test
+    void cacheKeepsOneUpdate() {
+        ContactCache cache = new ContactCache();
+        for (int i = 0; i < 1000; i++) {
+            cache.put(i, i + 1, i);
+        }
+        assertEquals(0, cache.get(1, 2), "Not visible before the next update");
+        cache.nextUpdate();
+        assertEquals(5, cache.get(5, 6));
+        assertEquals(5, cache.get(6, 5), "Either order of the pair");
+        assertEquals(0, cache.get(5, 7));
+        cache.put(1, 2, 42);
+        cache.nextUpdate();
+        assertEquals(42, cache.get(1, 2));
+        assertEquals(0, cache.get(5, 6), "Gone after an update without it");
+    }
+
+    @Test
+    void scenarioChoosesTheSolver() {
+        Properties properties = new Properties();
+        properties.setProperty("strategy", "impulse");
+        properties.setProperty("iterations", "4");
+        properties.setProperty("restitution", "0.5");
+        properties.setProperty("restingSpeed", "0.2");
+        properties.setProperty("balls", "500");
+        Scenario scenario = Scenario.fromProperties(properties);
+        Model model = scenario.createModel();
+        model.step(0.5);
+        for (int i = 0; i < model.balls.size(); i++) {
+            assertTrue(Double.isFinite(model.balls.x[i]) && Double.isFinite(model.balls.vy[i]));
+        }
+        for (String engine : new String[] {"parallel", "event"}) {
+            properties.setProperty("engine", engine);
+            assertThrows(IllegalArgumentException.class, () -> Scenario.fromProperties(properties).createEngine());
+        }
+    }
+
+    @Test
+    void slowContactsBounceByDefault() {
+        BallStore balls = new BallStore(2);
+        balls.add(1, 1, 0.1, 0, 0.3, 1);
+        balls.add(1.5, 1, 0, 0, 0.3, 1);
+        ContactList contacts = new ContactList();
+        contacts.addIfTouching(balls, 0, 1);
+        new SequentialImpulseSolver(10, 10, 5).resolveContacts(balls, contacts);
+        assertEquals(0, balls.vx[0], 1e-12);
+        assertEquals(0.1, balls.vx[1], 1e-12);
+    }
+}
@@ -0,0 +1,67 @@
+package bouncing_balls;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimulationLoopTest {
+
+    Model model() {
+        BallStore balls = new BallStore(2);
+        balls.add(1, 1, 1, 0, 0.1, 1);
+        balls.add(2, 2, 0, 1, 0.2, 2);
+        PhysicsEngine engine = new PhysicsEngine(5, 5);
+        engine.setCollisionStrategy(new ProjectionBallCollisionStrategy());
+        return new Model(5, 5, balls, engine);
+    }
+
+    @Test
+    void latestSnapshotFollowsSteps() {
+        Model model = model();
+        SimulationLoop loop = new SimulationLoop(model, 60);
+
+        SimulationLoop.Snapshot first = loop.latest();
+        assertEquals(2, first.count);
+        assertEquals(0, first.step);
+        assertEquals(1, first.x[0]);
+        assertEquals(0.2, first.radius[1]);
+
+        loop.step(0.1);
+        SimulationLoop.Snapshot second = loop.latest();
+        assertEquals(1, second.step);
+        assertEquals(model.interpolatedX(0), second.x[0]);
+        assertEquals(model.interpolatedY(1), second.y[1]);
+        assertSame(second, loop.latest(), "Nothing new published");
+    }
+
+    @Test
+    void readSnapshotIsNotOverwritten() {
+        Model model = model();
+        SimulationLoop loop = new SimulationLoop(model, 60);
+        SimulationLoop.Snapshot reading = loop.latest();
+        double x = reading.x[0];
+
+        for (int i = 0; i < 10; i++) {
+            loop.step(0.1);
+        }
+        assertEquals(0, reading.step);
+        assertEquals(x, reading.x[0]);
+        assertEquals(10, loop.latest().step);
+    }
+
+    @Test
+    void publishesFromItsOwnThread() throws InterruptedException {
+        SimulationLoop loop = new SimulationLoop(model(), 1000);
+        loop.start();
+        long last = 0;
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (last < 20 && System.nanoTime() < deadline) {
+            long step = loop.latest().step;
+            assertTrue(step >= last, "Steps never go back");
+            last = step;
+            Thread.sleep(1);
+        }
+        loop.stop();
+        assertTrue(last >= 20, "Steps published: " + last);
+    }
+}
@@ -0,0 +1,103 @@
+package bouncing_balls;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SleepSystemTest {
+
+    static final double DT = 1.0 / 240;
+
+    PhysicsEngine engine;
+    int handledPairs;
+
+    @BeforeEach
+    void setUp() {
+        engine = new PhysicsEngine(10, 10);
+        engine.setCollisionStrategy((obj1, obj2) -> {
+            handledPairs++;
+            new ProjectionBallCollisionStrategy().handleCollision(obj1, obj2);
+        });
+        engine.setSleeping(0.1, 0.5);
+    }
+
+    void run(BallStore balls, double seconds) {
+        for (int step = 0; step < seconds / DT; step++) {
+            engine.update(balls, DT);
+        }
+    }
+
+    @Test
+    void restingBallFallsAsleepAndStopsMoving() {
+        BallStore balls = new BallStore(1);
+        balls.add(5, 0.5, 0, 0, 0.5, 1);
+
+        run(balls, 1);
+        assertTrue(balls.asleep[0]);
+        double y = balls.y[0];
+
+        run(balls, 1);
+        assertEquals(y, balls.y[0]);
+        assertEquals(0, balls.vy[0]);
+    }
+
+    @Test
+    void sleepingPairsAreSkipped() {
+        BallStore balls = new BallStore(2);
+        balls.add(5, 0.5, 0, 0, 0.5, 1);
+        balls.add(6, 0.5, 0, 0, 0.5, 1);
+
+        run(balls, 1);
+        assertTrue(balls.asleep[0] && balls.asleep[1]);
+
+        handledPairs = 0;
+        run(balls, 0.1);
+        assertEquals(0, handledPairs);
+    }
+
+    @Test
+    void movingBallWakesWholeIsland() {
+        BallStore balls = new BallStore(3);
+        balls.add(5, 0.5, 0, 0, 0.5, 1);
+        balls.add(6, 0.5, 0, 0, 0.5, 1);
+        run(balls, 1);
+        assertTrue(balls.asleep[0] && balls.asleep[1]);
+
+        // Roll a ball into the left one, the right one is woken through the contact
+        balls.add(2, 0.5, 5, 0, 0.5, 1);
+        run(balls, 0.5);
+        assertNotEquals(5, balls.x[0]);
+        assertFalse(balls.asleep[1]);
+        assertTrue(balls.vx[1] > 0, "Right ball was not pushed");
+    }
+
+    @Test
+    void nearlyTouchingBallsShareAnIsland() {
+        // Sweep and prune only reports overlapping boxes, and these boxes are 1 cm apart
+        engine.setBroadPhase(new SweepAndPruneBroadPhase());
+        BallStore balls = new BallStore(2);
+        balls.add(5, 0.5, 0, 0, 0.5, 1);
+        balls.add(6.01, 0.5, 0, 0, 0.5, 1);
+        run(balls, 1);
+        assertTrue(balls.asleep[0] && balls.asleep[1]);
+
+        balls.asleep[0] = false;
+        balls.vy[0] = 3;
+        engine.update(balls, DT);
+        assertFalse(balls.asleep[1]);
+    }
+
+    @Test
+    void scenarioOnlySleepsWithTheSerialEngine() {
+        Properties properties = new Properties();
+        properties.setProperty("sleepSpeed", "0.1");
+        Scenario.fromProperties(properties).createEngine();
+        for (String engine : new String[] {"parallel", "event"}) {
+            properties.setProperty("engine", engine);
+            assertThrows(IllegalArgumentException.class, () -> Scenario.fromProperties(properties).createEngine());
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package bouncing_balls;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    Model model() {
+        BallStore balls = new BallStore(3);
+        balls.add(1, 1, 1, 0, 0.1, 1);
+        balls.add(2, 2, 0, 1, 0.2, 2);
+        balls.add(3, 3, -1, -1, 0.3, 3);
+        PhysicsEngine engine = new PhysicsEngine(5, 5);
+        engine.setCollisionStrategy(new ProjectionBallCollisionStrategy());
+        return new Model(5, 5, balls, engine);
+    }
+
+    @Test
+    void readsBackEveryFrame() throws IOException {
+        Path file = directory.resolve("run.snap");
+        Model model = model();
+        double[][] expectedX = new double[5][];
+
+        try (SnapshotWriter writer = new SnapshotWriter(file, model.balls, 5, 5, 10)) {
+            for (int frame = 0; frame < 5; frame++) {
+                expectedX[frame] = model.balls.x.clone();
+                writer.append(frame * 0.1);
+                model.step(0.1);
+            }
+        }
+
+        try (SnapshotReader reader = new SnapshotReader(file)) {
+            assertEquals(5, reader.getFramesWritten());
+            assertEquals(0, reader.getFirstFrame());
+            BallStore balls = new BallStore(0);
+            assertEquals(0.3, reader.read(3, balls), 1e-12);
+            assertEquals(3, balls.size());
+            for (int i = 0; i < 3; i++) {
+                assertEquals(expectedX[3][i], balls.x[i]);
+            }
+            assertEquals(0.2, balls.radius[1]);
+            assertEquals(3, balls.mass[2]);
+        }
+    }
+
+    @Test
+    void ringKeepsMostRecentFrames() throws IOException {
+        Path file = directory.resolve("ring.snap");
+        Model model = model();
+
+        try (SnapshotWriter writer = new SnapshotWriter(file, model.balls, 5, 5, 4)) {
+            for (int frame = 0; frame < 10; frame++) {
+                writer.append(frame);
+                model.step(0.1);
+            }
+        }
+
+        try (SnapshotReader reader = new SnapshotReader(file)) {
+            assertEquals(6, reader.getFirstFrame());
+            assertThrows(IllegalArgumentException.class, () -> reader.read(5, new BallStore(3)));
+            Model restored = reader.restore(9, new PhysicsEngine(5, 5));
+            assertEquals(5, restored.areaWidth);
+            assertEquals(3, restored.balls.size());
+            assertEquals(9, reader.read(9, new BallStore(3)));
+        }
+    }
+
+    @Test
+    void rejectsOtherFiles() throws IOException {
+        Path file = directory.resolve("other.snap");
+        Files.write(file, new byte[100]);
+        assertThrows(IOException.class, () -> new SnapshotReader(file));
+    }
+
+    @Test
+    void rejectsTruncatedFiles() throws IOException {
+        Path file = directory.resolve("truncated.snap");
+        try (SnapshotWriter writer = new SnapshotWriter(file, model().balls, 5, 5, 4)) {
+            writer.append(0);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+        IOException e = assertThrows(IOException.class, () -> new SnapshotReader(file));
+        assertTrue(e.getMessage().startsWith("Truncated"));
+    }
+}
@@ -0,0 +1,81 @@
+package bouncing_balls;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrajectoryTest {
+
+    Model model() {
+        BallStore balls = new BallStore(3);
+        balls.add(1, 1, 1, 0, 0.1, 1);
+        balls.add(2, 2, 0, 1, 0.2, 2);
+        balls.add(3, 3, -1, -1, 0.3, 3);
+        PhysicsEngine engine = new PhysicsEngine(5, 5);
+        engine.setCollisionStrategy(new ProjectionBallCollisionStrategy());
+        return new Model(5, 5, balls, engine);
+    }
+
+    @Test
+    void readsBackEveryFrameWithinPrecision() throws IOException {
+        Model model = model();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        double[][] expectedX = new double[25][];
+        double[][] expectedY = new double[25][];
+
+        // A small keyframe interval and a single buffer, so both frame types and waiting are exercised
+        try (TrajectoryWriter writer = new TrajectoryWriter(bytes, 3, 1e-4, 4, 1)) {
+            for (int frame = 0; frame < 25; frame++) {
+                expectedX[frame] = model.balls.x.clone();
+                expectedY[frame] = model.balls.y.clone();
+                writer.append(model.balls, frame * 0.1);
+                model.step(0.1);
+            }
+        }
+
+        try (TrajectoryReader reader = new TrajectoryReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertEquals(3, reader.getBallCount());
+            for (int frame = 0; frame < 25; frame++) {
+                assertTrue(reader.next());
+                assertEquals(frame * 0.1, reader.getTime(), 1e-12);
+                for (int i = 0; i < 3; i++) {
+                    assertEquals(expectedX[frame][i], reader.getX(i), 0.5e-4 + 1e-12);
+                    assertEquals(expectedY[frame][i], reader.getY(i), 0.5e-4 + 1e-12);
+                }
+            }
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    void unmovedBallsTakeNoSpace() throws IOException {
+        BallStore balls = new BallStore(1000);
+        for (int i = 0; i < 1000; i++) {
+            balls.add(i * 0.01, 1, 0, 0, 0.001, 1);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (TrajectoryWriter writer = new TrajectoryWriter(bytes, 1000, 1e-3, 1000, 2)) {
+            for (int frame = 0; frame < 100; frame++) {
+                balls.x[7] += 0.01;
+                writer.append(balls, frame);
+            }
+        }
+
+        // One keyframe, then per frame: type, time, count and a single moved ball
+        int header = 8 + 4 + 4 + 8 + 4;
+        assertTrue(bytes.size() < header + 1000 * 4 + 100 * 16, "Size: " + bytes.size());
+
+        try (TrajectoryReader reader = new TrajectoryReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+            for (int frame = 0; frame < 100; frame++) {
+                assertTrue(reader.next());
+            }
+            assertEquals(0.07 + 100 * 0.01, reader.getX(7), 1e-3);
+            assertEquals(0.5, reader.getX(50), 1e-3);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package bouncing_balls;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class VectorIntegrationKernelTest {
+
+    BallStore balls(int count, long seed) {
+        Random random = new Random(seed);
+        BallStore balls = new BallStore(count);
+        for (int i = 0; i < count; i++) {
+            double r = 0.05 + random.nextDouble() * 0.1;
+            // Some balls start outside the walls, so every wall gets hit
+            double x = -0.2 + random.nextDouble() * 5.4;
+            double y = -0.2 + random.nextDouble() * 5.4;
+            balls.add(x, y, random.nextGaussian() * 5, random.nextGaussian() * 5, r, 1);
+            balls.asleep[i] = random.nextInt(5) == 0;
+        }
+        return balls;
+    }
+
+    @Test
+    void matchesScalarCodeExactly() {
+        assumeTrue(PhysicsEngine.VECTOR_API_AVAILABLE, "Needs --add-modules jdk.incubator.vector");
+        // Counts that are and are not multiples of the vector length
+        for (int count : new int[] {3, 64, 1001}) {
+            BallStore vector = balls(count, count);
+            BallStore scalar = balls(count, count);
+            PhysicsEngine engine = new PhysicsEngine(5, 5);
+            engine.setVectorized(true);
+            PhysicsEngine scalarEngine = new PhysicsEngine(5, 5);
+            scalarEngine.setVectorized(false);
+
+            int vectorHits = 0;
+            int scalarHits = 0;
+            for (int step = 0; step < 20; step++) {
+                vectorHits += engine.integrate(vector, 0, count, 0.01);
+                scalarHits += scalarEngine.integrate(scalar, 0, count, 0.01);
+            }
+
+            assertTrue(scalarHits > 0);
+            assertEquals(scalarHits, vectorHits);
+            assertArrayEquals(scalar.x, vector.x);
+            assertArrayEquals(scalar.y, vector.y);
+            assertArrayEquals(scalar.vx, vector.vx);
+            assertArrayEquals(scalar.vy, vector.vy);
+        }
+    }
+
+    @Test
+    void scalarFallbackCanBeChosen() {
+        PhysicsEngine engine = new PhysicsEngine(5, 5);
+        assertEquals(PhysicsEngine.VECTOR_API_AVAILABLE, engine.isVectorized());
+        engine.setVectorized(false);
+        assertFalse(engine.isVectorized());
+
+        BallStore balls = new BallStore(1);
+        balls.add(0.1, 2, -1, 0, 0.1, 1);
+        assertEquals(1, engine.integrate(balls, 0, 1, 0.1));
+        assertEquals(0.1, balls.x[0], 1e-12);
+        assertEquals(1, balls.vx[0]);
+    }
+}